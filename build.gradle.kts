@@ -1,6 +1,6 @@
 plugins {
     id("java")
-    id("org.springframework.boot") version "3.1.1"
+    id("org.springframework.boot") version "3.1.12"
 }
 
 apply(plugin = "io.spring.dependency-management")
@@ -8,22 +8,67 @@ apply(plugin = "io.spring.dependency-management")
 group = "com.poly"
 version = "1.0.0"
 
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
 repositories {
     mavenCentral()
 }
 
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+val loadtest: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+for (sourceSet in listOf(jmh, loadtest)) {
+    configurations[sourceSet.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+    configurations[sourceSet.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+}
+
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
+    implementation("org.springframework.boot:spring-boot-starter-cache")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("org.springframework.boot:spring-boot-starter-aop")
+    implementation("io.micrometer:micrometer-registry-prometheus")
+    implementation("com.github.ben-manes.caffeine:caffeine")
     implementation("org.postgresql:postgresql:42.6.0")
 
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
-    testImplementation("org.springframework.boot:spring-boot-starter-test:3.1.1")
+    testImplementation("org.springframework.boot:spring-boot-starter-test:3.1.12")
     testImplementation("org.testcontainers:postgresql:1.18.3")
     testImplementation("org.testcontainers:junit-jupiter:1.18.3")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+
+    "loadtestImplementation"("org.hdrhistogram:HdrHistogram:2.1.12")
 }
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks, JMH options are passed with --args."
+    group = "verification"
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+}
+
+tasks.register<JavaExec>("loadTest") {
+    description = "Runs the load test against a running application, arguments are passed with --args."
+    group = "verification"
+    classpath = loadtest.runtimeClasspath
+    mainClass.set("com.poly.loadtest.LoadTest")
+}
@@ -0,0 +1,122 @@
+package com.poly.benchmarks;
+
+import com.poly.analytics.BookLeaderboard;
+import com.poly.analytics.EventArchive;
+import com.poly.analytics.MappedEventStore;
+import com.poly.analytics.QueryDeadline;
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.ReaderDto;
+import com.poly.exceptions.NotFoundException;
+import com.poly.repositories.BookRepository;
+import com.poly.repositories.EventRepository;
+import com.poly.repositories.ReaderRepository;
+import com.poly.services.BookService;
+import com.poly.services.CollectionVersions;
+import com.poly.services.ReaderService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BookService#getMostPopularBook} and {@link ReaderService#getMostReader} over the event store,
+ * filled with {@code events} generated events, for an interval of {@code window} at the middle of the year.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AnalyticsBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    private int events;
+
+    @Param({"P1D", "P365D"})
+    private String window;
+
+    @Param({"0"})
+    private int parallelism;
+
+    private Path storeFile;
+    private MappedEventStore mappedEventStore;
+    private BookService bookService;
+    private ReaderService readerService;
+    private String start;
+    private String end;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<BookDto> books = Fixtures.books(Fixtures.BOOKS);
+        List<ReaderDto> readers = Fixtures.readers(Fixtures.READERS);
+        BookRepository bookRepository = Fixtures.repository(BookRepository.class, Map.of(
+                "findAllDtoById", args -> {
+                    List<BookDto> found = new ArrayList<>();
+                    for (Object id : (Iterable<?>) args[0]) found.add(books.get((Integer) id - 1));
+                    return found;
+                }));
+        ReaderRepository readerRepository = Fixtures.repository(ReaderRepository.class, Map.of(
+                "findDtoById", args -> Optional.of(readers.get((Integer) args[0] - 1))));
+        EventRepository eventRepository = Fixtures.repository(EventRepository.class, Map.of(
+                "streamAllInTimeOrder", args -> Fixtures.events(events)));
+
+        storeFile = Files.createTempFile("event-store", ".bin");
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EventArchive eventArchive = new EventArchive(false, storeFile.resolveSibling("archive"), 0, meterRegistry);
+        mappedEventStore = new MappedEventStore(true, storeFile, 10000, parallelism, 262144, eventRepository, eventArchive, meterRegistry);
+        mappedEventStore.load();
+        CollectionVersions collectionVersions = new CollectionVersions();
+        QueryDeadline queryDeadline = new QueryDeadline(null);
+        bookService = new BookService(bookRepository,
+                new BookLeaderboard(false, 48, eventRepository, bookRepository, eventArchive, queryDeadline),
+                eventArchive,
+                mappedEventStore,
+                collectionVersions,
+                queryDeadline);
+        readerService = new ReaderService(readerRepository, eventArchive, mappedEventStore, collectionVersions, queryDeadline);
+
+        Duration length = Duration.parse(window);
+        Duration year = Duration.between(Fixtures.FIRST_EVENT, Fixtures.LAST_EVENT);
+        start = Fixtures.FIRST_EVENT.plus(year.minus(length).dividedBy(2)).minusSeconds(1).toString();
+        end = Fixtures.FIRST_EVENT.plus(year.plus(length).dividedBy(2)).plusSeconds(1).toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mappedEventStore.shutdown();
+        Files.deleteIfExists(storeFile);
+        Files.deleteIfExists(storeFile.resolveSibling(storeFile.getFileName() + ".merge"));
+    }
+
+    @Benchmark
+    public BookDto mostPopularBook() throws NotFoundException {
+        return bookService.getMostPopularBook(start, end);
+    }
+
+    @Benchmark
+    public ReaderDto mostReader() throws NotFoundException {
+        return readerService.getMostReader(start, end);
+    }
+}
@@ -0,0 +1,120 @@
+package com.poly.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poly.analytics.BookLeaderboard;
+import com.poly.analytics.EventArchive;
+import com.poly.analytics.MappedEventStore;
+import com.poly.analytics.QueryDeadline;
+import com.poly.domains.dto.EventDto;
+import com.poly.exceptions.NotFoundException;
+import com.poly.repositories.BookActivityRepository;
+import com.poly.repositories.BookRepository;
+import com.poly.repositories.EventRepository;
+import com.poly.repositories.ReaderActivityRepository;
+import com.poly.repositories.ReaderRepository;
+import com.poly.services.ActivityRollupService;
+import com.poly.services.BookService;
+import com.poly.services.CollectionVersions;
+import com.poly.services.EventPartitionService;
+import com.poly.services.EventService;
+import com.poly.services.ReaderService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
+
+/**
+ * {@link EventService#createEvent} with in-memory repositories, which leaves the mapping between
+ * the DTO and the entity, and the parsing and formatting of the event datetime on their own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventMappingBenchmark {
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private EventService eventService;
+    private EventDto eventDto;
+    private String eventDatetime;
+    private LocalDateTime parsedEventDatetime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ReaderRepository readerRepository = Fixtures.repository(ReaderRepository.class, Map.of());
+        BookRepository bookRepository = Fixtures.repository(BookRepository.class, Map.of());
+        EventRepository eventRepository = Fixtures.repository(EventRepository.class, Map.of(
+                "insertCounted", args -> nextId.incrementAndGet()));
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EventArchive eventArchive = new EventArchive(false, Path.of("archive"), 0, meterRegistry);
+        ActivityRollupService activityRollupService = new ActivityRollupService(
+                Fixtures.repository(BookActivityRepository.class, Map.of()),
+                Fixtures.repository(ReaderActivityRepository.class, Map.of()),
+                null,
+                eventArchive,
+                null);
+        MappedEventStore mappedEventStore = new MappedEventStore(false, Path.of("event-store.bin"), 0, 1, 0,
+                eventRepository, eventArchive, meterRegistry);
+        CollectionVersions collectionVersions = new CollectionVersions();
+        QueryDeadline queryDeadline = new QueryDeadline(null);
+        BookLeaderboard bookLeaderboard = new BookLeaderboard(false, 48, eventRepository, bookRepository, eventArchive,
+                queryDeadline);
+        eventService = new EventService(eventRepository,
+                readerRepository,
+                bookRepository,
+                new ReaderService(readerRepository, eventArchive, mappedEventStore, collectionVersions, queryDeadline),
+                new BookService(bookRepository, bookLeaderboard, eventArchive, mappedEventStore, collectionVersions,
+                        queryDeadline),
+                new EventPartitionService(false, 0, 0, null, null, null, null, null, null, null),
+                activityRollupService,
+                bookLeaderboard,
+                mappedEventStore,
+                eventArchive,
+                collectionVersions,
+                new ObjectMapper());
+
+        eventDatetime = "2025-06-15T12:34:56.789012";
+        parsedEventDatetime = LocalDateTime.parse(eventDatetime);
+        eventDto = new EventDto(null, 1, 1, "TAKE_BOOK", eventDatetime);
+    }
+
+    @Benchmark
+    public EventDto createEvent() throws NotFoundException {
+        return eventService.createEvent(eventDto);
+    }
+
+    @Benchmark
+    public LocalDateTime parseEventDatetime() {
+        return LocalDateTime.parse(eventDatetime);
+    }
+
+    @Benchmark
+    public LocalDateTime parseEventDatetimeWithFormatter() {
+        return LocalDateTime.parse(eventDatetime, DATE_FORMATTER);
+    }
+
+    @Benchmark
+    public String formatEventDatetime() {
+        return parsedEventDatetime.format(DATE_FORMATTER);
+    }
+}
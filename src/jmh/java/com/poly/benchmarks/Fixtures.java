@@ -0,0 +1,79 @@
+package com.poly.benchmarks;
+
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.EventRow;
+import com.poly.domains.dto.ReaderDto;
+import com.poly.utils.EventType;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * In-memory data and repositories for the benchmarks, so that they run without a database.
+ */
+final class Fixtures {
+
+    static final int BOOKS = 10_000;
+    static final int READERS = 10_000;
+    static final LocalDateTime FIRST_EVENT = LocalDateTime.of(2025, 1, 1, 0, 0);
+    static final LocalDateTime LAST_EVENT = FIRST_EVENT.plusYears(1);
+
+    private static final long SEED = 42;
+
+    private Fixtures() {}
+
+    /**
+     * Repository whose methods are answered by the given functions of their arguments, by method name.
+     * Any other method fails, so a benchmark never measures an unexpected code path.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> methods) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName() + " fixture";
+                };
+            }
+            Function<Object[], Object> answer = methods.get(method.getName());
+            if (answer == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return answer.apply(args);
+        });
+    }
+
+    /**
+     * Events spread evenly over a year in time order, with uniformly random readers, books and types.
+     */
+    static Stream<EventRow> events(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        long stepNanos = Duration.between(FIRST_EVENT, LAST_EVENT).toNanos() / count;
+        EventType[] types = EventType.values();
+        return IntStream.range(0, count).mapToObj(i -> new EventRow(i + 1,
+                random.nextInt(READERS) + 1,
+                random.nextInt(BOOKS) + 1,
+                types[random.nextInt(types.length)].name(),
+                FIRST_EVENT.plusNanos(stepNanos * i / 1000 * 1000)));
+    }
+
+    static List<BookDto> books(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(id -> new BookDto(id, "Book " + id, "Author " + id % 100))
+                .toList();
+    }
+
+    static List<ReaderDto> readers(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(id -> new ReaderDto(id, "First name " + id, "Last name " + id))
+                .toList();
+    }
+}
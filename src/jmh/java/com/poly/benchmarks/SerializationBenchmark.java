@@ -0,0 +1,63 @@
+package com.poly.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.ReaderDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of book and reader lists of {@code size} elements, with the object mapper
+ * configured the way the application configures it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    private int size;
+
+    private ObjectWriter bookWriter;
+    private ObjectWriter readerWriter;
+    private List<BookDto> books;
+    private List<ReaderDto> readers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        bookWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, BookDto.class));
+        readerWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, ReaderDto.class));
+        books = Fixtures.books(size);
+        readers = Fixtures.readers(size);
+    }
+
+    @Benchmark
+    public byte[] books() throws JsonProcessingException {
+        return bookWriter.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] readers() throws JsonProcessingException {
+        return readerWriter.writeValueAsBytes(readers);
+    }
+}
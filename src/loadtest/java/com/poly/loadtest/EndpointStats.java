@@ -0,0 +1,56 @@
+package com.poly.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies in microseconds and response statuses of one endpoint. Responses with a 5xx status
+ * and requests that failed without a response are errors; 4xx statuses are answers of the API.
+ */
+class EndpointStats {
+
+    static final String FAILED = "failed";
+
+    private final Histogram latencies = new ConcurrentHistogram(3);
+    private final LongAdder errors = new LongAdder();
+    private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    void record(long latencyNanos, int status) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        statuses.computeIfAbsent(String.valueOf(status), s -> new LongAdder()).increment();
+        if (status >= 500) errors.increment();
+    }
+
+    void recordFailure(long latencyNanos) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        statuses.computeIfAbsent(FAILED, s -> new LongAdder()).increment();
+        errors.increment();
+    }
+
+    void addTo(EndpointStats total) {
+        total.latencies.add(latencies);
+        total.errors.add(errors.sum());
+        statuses.forEach((status, count) -> total.statuses.computeIfAbsent(status, s -> new LongAdder()).add(count.sum()));
+    }
+
+    Report.Endpoint report(double seconds) {
+        Map<String, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+        long requests = latencies.getTotalCount();
+        return new Report.Endpoint(requests,
+                errors.sum(),
+                requests / seconds,
+                statusCounts,
+                requests == 0 ? 0 : latencies.getMean(),
+                latencies.getValueAtPercentile(50),
+                latencies.getValueAtPercentile(99),
+                latencies.getValueAtPercentile(99.9),
+                latencies.getMaxValue());
+    }
+}
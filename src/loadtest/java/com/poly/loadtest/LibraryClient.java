@@ -0,0 +1,99 @@
+package com.poly.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.EventBatchItemDto;
+import com.poly.domains.dto.EventDto;
+import com.poly.domains.dto.ReaderDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP client of the application API, used both to fill the library and to drive the workload.
+ */
+class LibraryClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+
+    LibraryClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+    }
+
+    HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    HttpRequest post(String path, Object body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(toJson(body)))
+                .build();
+    }
+
+    /**
+     * Sends the request and returns the status code, the body is read and discarded.
+     */
+    CompletableFuture<Integer> sendAsync(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    }
+
+    int send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    BookDto createBook(BookDto book) throws IOException, InterruptedException {
+        return exchange(post("/book/create", book), new TypeReference<>() {});
+    }
+
+    ReaderDto createReader(ReaderDto reader) throws IOException, InterruptedException {
+        return exchange(post("/reader/create", reader), new TypeReference<>() {});
+    }
+
+    List<EventBatchItemDto> createEvents(List<EventDto> events) throws IOException, InterruptedException {
+        return exchange(post("/event/batch", events), new TypeReference<>() {});
+    }
+
+    List<BookDto> getBooks() throws IOException, InterruptedException {
+        return exchange(get("/book/"), new TypeReference<>() {});
+    }
+
+    List<ReaderDto> getReaders() throws IOException, InterruptedException {
+        return exchange(get("/reader/"), new TypeReference<>() {});
+    }
+
+    private <T> T exchange(HttpRequest request, TypeReference<T> type) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(request.method() + " " + request.uri() + " failed with " + response.statusCode()
+                    + ": " + new String(response.body()));
+        }
+        return objectMapper.readValue(response.body(), type);
+    }
+
+    private byte[] toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
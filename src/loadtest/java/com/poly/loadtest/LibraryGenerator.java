@@ -0,0 +1,134 @@
+package com.poly.loadtest;
+
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.EventBatchItemDto;
+import com.poly.domains.dto.EventDto;
+import com.poly.domains.dto.ReaderDto;
+import com.poly.utils.ApplicationConstants;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
+
+/**
+ * Fills an empty application with a synthetic library through its API, so that the daily
+ * counters, caches and analytics stores are maintained the same way as in production.
+ * <p>
+ * Books and readers are chosen by Zipf distributions, so a few popular books and active readers
+ * take most of the events. Every event takes a book at a uniformly random time of the period
+ * and, unless the period ends first, returns it 1 hour to 30 days later.
+ */
+class LibraryGenerator {
+
+    private static final Duration MIN_LOAN = Duration.ofHours(1);
+    private static final Duration MAX_LOAN = Duration.ofDays(30);
+
+    private final LibraryClient client;
+    private final Period period;
+    private final int books;
+    private final int readers;
+    private final long events;
+    private final double exponent;
+    private final int threads;
+    private final long seed;
+
+    LibraryGenerator(LibraryClient client, Period period, int books, int readers, long events,
+                     double exponent, int threads, long seed) {
+        this.client = client;
+        this.period = period;
+        this.books = books;
+        this.readers = readers;
+        this.events = events;
+        this.exponent = exponent;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    void generate() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long startedAt = System.nanoTime();
+            List<Integer> bookIds = createAll(executor, books,
+                    i -> client.createBook(new BookDto(null, "Book " + i, "Author " + i % Math.max(1, books / 10))).id());
+            List<Integer> readerIds = createAll(executor, readers,
+                    i -> client.createReader(new ReaderDto(null, "Reader " + i, "Surname " + i)).id());
+            System.out.printf("Created %d books and %d readers in %d s%n", bookIds.size(), readerIds.size(),
+                    Duration.ofNanos(System.nanoTime() - startedAt).toSeconds());
+            createEvents(executor, bookIds, readerIds);
+            System.out.printf("Library generated in %d s%n", Duration.ofNanos(System.nanoTime() - startedAt).toSeconds());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Integer> createAll(ExecutorService executor, int count, Creator creator) throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> creator.create(index)));
+        }
+        List<Integer> ids = new ArrayList<>(count);
+        for (Future<Integer> future : futures) ids.add(get(future));
+        return ids;
+    }
+
+    private void createEvents(ExecutorService executor, List<Integer> bookIds, List<Integer> readerIds) throws Exception {
+        ZipfDistribution bookDistribution = new ZipfDistribution(bookIds.size(), exponent);
+        ZipfDistribution readerDistribution = new ZipfDistribution(readerIds.size(), exponent);
+        SplittableRandom random = new SplittableRandom(seed);
+        long periodMicros = Duration.between(period.from(), period.to()).toNanos() / 1000;
+        AtomicLong created = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<Future<?>> batches = new ArrayList<>();
+        List<EventDto> batch = new ArrayList<>(ApplicationConstants.MAX_BATCH_SIZE);
+        long generated = 0;
+        while (generated < events) {
+            int book = bookIds.get(bookDistribution.sample(random));
+            int reader = readerIds.get(readerDistribution.sample(random));
+            LocalDateTime takenAt = period.from().plusNanos(random.nextLong(periodMicros) * 1000);
+            batch.add(new EventDto(null, reader, book, "TAKE_BOOK", takenAt.format(DATE_FORMATTER)));
+            generated++;
+            LocalDateTime returnedAt = takenAt.plusNanos(random.nextLong(MIN_LOAN.toNanos() / 1000, MAX_LOAN.toNanos() / 1000) * 1000);
+            if (generated < events && returnedAt.isBefore(period.to())) {
+                batch.add(new EventDto(null, reader, book, "RETURN_BOOK", returnedAt.format(DATE_FORMATTER)));
+                generated++;
+            }
+            if (batch.size() >= ApplicationConstants.MAX_BATCH_SIZE - 1 || generated == events) {
+                List<EventDto> items = batch;
+                batches.add(executor.submit(() -> {
+                    for (EventBatchItemDto item : client.createEvents(items)) {
+                        (item.error() == null ? created : failed).incrementAndGet();
+                    }
+                    return null;
+                }));
+                batch = new ArrayList<>(ApplicationConstants.MAX_BATCH_SIZE);
+                if (batches.size() >= threads * 2) get(batches.remove(0));
+            }
+        }
+        for (Future<?> future : batches) get(future);
+        System.out.printf("Created %d events, %d rejected%n", created.get(), failed.get());
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Creator {
+
+        Integer create(int index) throws Exception;
+    }
+}
@@ -0,0 +1,104 @@
+package com.poly.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the workload against the application and collects the statistics of the requests
+ * that start after the warm-up.
+ * <p>
+ * In the closed loop every thread sends its next request once the previous one is answered,
+ * so the measured throughput is the capacity for that concurrency. In the open loop requests
+ * are sent at a fixed rate regardless of the answers, and latencies are measured from the time
+ * a request was due, so a stalled server shows up in the percentiles instead of lowering the rate.
+ */
+class LoadRunner {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    private final LibraryClient client;
+    private final Workload workload;
+    private final Duration warmup;
+    private final Duration duration;
+    private final long seed;
+    private final EndpointStats[] stats;
+
+    LoadRunner(LibraryClient client, Workload workload, Duration warmup, Duration duration, long seed) {
+        this.client = client;
+        this.workload = workload;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.seed = seed;
+        this.stats = new EndpointStats[workload.endpoints().size()];
+        for (int i = 0; i < stats.length; i++) stats[i] = new EndpointStats();
+    }
+
+    EndpointStats[] stats() {
+        return stats;
+    }
+
+    void closedLoop(int threads) throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom workerRandom = random.split();
+            Thread worker = new Thread(() -> {
+                while (true) {
+                    Workload.Request request = workload.next(workerRandom);
+                    long startedAt = System.nanoTime();
+                    if (startedAt >= end) return;
+                    try {
+                        int status = client.send(request.httpRequest());
+                        if (startedAt >= measureFrom) stats[request.endpoint()].record(System.nanoTime() - startedAt, status);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Exception e) {
+                        if (startedAt >= measureFrom) stats[request.endpoint()].recordFailure(System.nanoTime() - startedAt);
+                    }
+                }
+            }, "load-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) worker.join();
+    }
+
+    void openLoop(double rate) throws InterruptedException {
+        long startedAt = System.nanoTime();
+        long measureFrom = startedAt + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        SplittableRandom random = new SplittableRandom(seed);
+        AtomicLong inFlight = new AtomicLong();
+        for (long i = 0; ; i++) {
+            long dueAt = startedAt + (long) (i * intervalNanos);
+            if (dueAt >= end) break;
+            long delay = dueAt - System.nanoTime();
+            if (delay > 0) LockSupport.parkNanos(delay);
+            Workload.Request request = workload.next(random);
+            inFlight.incrementAndGet();
+            client.sendAsync(request.httpRequest()).whenComplete((status, e) -> {
+                if (dueAt >= measureFrom) {
+                    if (e == null) {
+                        stats[request.endpoint()].record(System.nanoTime() - dueAt, status);
+                    } else {
+                        stats[request.endpoint()].recordFailure(System.nanoTime() - dueAt);
+                    }
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+        long drainUntil = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        if (inFlight.get() > 0) System.out.printf("%d requests still unanswered, not counted%n", inFlight.get());
+    }
+}
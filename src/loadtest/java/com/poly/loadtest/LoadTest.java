@@ -0,0 +1,97 @@
+package com.poly.loadtest;
+
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.ReaderDto;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load test of a running application.
+ * <pre>
+ * generate --books=10000 --readers=10000 --events=1000000
+ * run --mode=closed --threads=32 --duration=60s --report=build/loadtest/report.json --baseline=previous.json
+ * run --mode=open --rate=500 --mix=book.get:1,book.popular:1
+ * </pre>
+ * See the README for all options.
+ */
+public class LoadTest {
+
+    private static final LocalDateTime DEFAULT_FROM = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final LocalDateTime DEFAULT_TO = DEFAULT_FROM.plusYears(1);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !List.of("generate", "run").contains(args[0])) {
+            System.err.println("Usage: LoadTest generate|run [--name=value ...]");
+            System.exit(2);
+        }
+        Options options = new Options(List.of(args).subList(1, args.length).toArray(String[]::new));
+        LibraryClient client = new LibraryClient(options.string("url", "http://localhost:8080/api/v1"));
+        Period period = new Period(options.dateTime("from", DEFAULT_FROM), options.dateTime("to", DEFAULT_TO));
+        double exponent = options.decimal("zipf-exponent", 1.0);
+        long seed = options.integer("seed", 42);
+        if (args[0].equals("generate")) {
+            LibraryGenerator generator = new LibraryGenerator(client, period,
+                    options.integer("books", 10_000),
+                    options.integer("readers", 10_000),
+                    options.integer("events", 1_000_000),
+                    exponent,
+                    options.integer("threads", 8),
+                    seed);
+            options.checkAllUsed();
+            generator.generate();
+        } else {
+            run(options, client, period, exponent, seed);
+        }
+    }
+
+    private static void run(Options options, LibraryClient client, Period period, double exponent, long seed) throws Exception {
+        String mode = options.string("mode", "closed");
+        int threads = options.integer("threads", 16);
+        double rate = options.decimal("rate", 100);
+        Duration warmup = options.duration("warmup", Duration.ofSeconds(30));
+        Duration duration = options.duration("duration", Duration.ofSeconds(60));
+        String mix = options.string("mix", Workload.DEFAULT_MIX);
+        Path reportPath = Path.of(options.string("report", "build/loadtest/report.json"));
+        String baselinePath = options.string("baseline", null);
+        options.checkAllUsed();
+        if (!mode.equals("closed") && !mode.equals("open")) throw new IllegalArgumentException("Unknown mode: " + mode);
+
+        List<Integer> bookIds = client.getBooks().stream().map(BookDto::id).toList();
+        List<Integer> readerIds = client.getReaders().stream().map(ReaderDto::id).toList();
+        if (bookIds.isEmpty() || readerIds.isEmpty()) {
+            throw new IllegalStateException("The library is empty, fill it with the generate command first");
+        }
+        Workload workload = new Workload(client, period, bookIds, readerIds, exponent, mix);
+        LoadRunner runner = new LoadRunner(client, workload, warmup, duration, seed);
+        String startedAt = OffsetDateTime.now().toString();
+        System.out.printf("Running %s loop for %s after %s of warm-up%n", mode, duration, warmup);
+        if (mode.equals("closed")) {
+            runner.closedLoop(threads);
+        } else {
+            runner.openLoop(rate);
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, Report.Endpoint> endpoints = new LinkedHashMap<>();
+        EndpointStats total = new EndpointStats();
+        for (int i = 0; i < runner.stats().length; i++) {
+            endpoints.put(workload.endpoints().get(i), runner.stats()[i].report(seconds));
+            runner.stats()[i].addTo(total);
+        }
+        Report report = new Report(startedAt, mode, mode.equals("closed") ? threads : 0, mode.equals("open") ? rate : 0,
+                warmup.toSeconds(), duration.toSeconds(), mix, endpoints, total.report(seconds));
+        report.write(reportPath);
+        report.print();
+        System.out.println("Report written to " + reportPath.toAbsolutePath());
+        if (baselinePath != null && Files.exists(Path.of(baselinePath))) {
+            report.printComparison(Report.read(Path.of(baselinePath)));
+        }
+    }
+}
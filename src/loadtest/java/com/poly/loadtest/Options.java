@@ -0,0 +1,61 @@
+package com.poly.loadtest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line options given as {@code --name=value}.
+ */
+class Options {
+
+    private final Map<String, String> values = new HashMap<>();
+    private final Set<String> used = new HashSet<>();
+
+    Options(String[] args) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Option must be given as --name=value: " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+    }
+
+    String string(String name, String defaultValue) {
+        used.add(name);
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int integer(String name, int defaultValue) {
+        String value = string(name, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    double decimal(String name, double defaultValue) {
+        String value = string(name, null);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    Duration duration(String name, Duration defaultValue) {
+        String value = string(name, null);
+        return value == null ? defaultValue : Duration.parse("PT" + value.toUpperCase());
+    }
+
+    LocalDateTime dateTime(String name, LocalDateTime defaultValue) {
+        String value = string(name, null);
+        return value == null ? defaultValue : LocalDateTime.parse(value);
+    }
+
+    /**
+     * Fails on options that none of the getters asked for, which are most likely misspelled.
+     */
+    void checkAllUsed() {
+        Set<String> unknown = new HashSet<>(values.keySet());
+        unknown.removeAll(used);
+        if (!unknown.isEmpty()) throw new IllegalArgumentException("Unknown options: " + unknown);
+    }
+}
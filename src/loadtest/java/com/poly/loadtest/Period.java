@@ -0,0 +1,9 @@
+package com.poly.loadtest;
+
+import java.time.LocalDateTime;
+
+/**
+ * Time span of the generated events, [from, to).
+ */
+record Period(LocalDateTime from, LocalDateTime to) {
+}
@@ -0,0 +1,82 @@
+package com.poly.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Result of a run, written as JSON so that runs can be compared, latencies in microseconds.
+ */
+record Report(String startedAt,
+              String mode,
+              int threads,
+              double rate,
+              long warmupSeconds,
+              long durationSeconds,
+              String mix,
+              Map<String, Endpoint> endpoints,
+              Endpoint total) {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    void write(Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        objectMapper.writeValue(path.toFile(), this);
+    }
+
+    static Report read(Path path) throws IOException {
+        return objectMapper.readValue(path.toFile(), Report.class);
+    }
+
+    void print() {
+        System.out.printf("%-18s %10s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 us", "p99 us", "p999 us", "max us");
+        endpoints.forEach(Report::print);
+        print("total", total);
+    }
+
+    private static void print(String name, Endpoint endpoint) {
+        System.out.printf("%-18s %10d %8d %10.1f %10d %10d %10d %10d%n", name, endpoint.requests(), endpoint.errors(),
+                endpoint.throughput(), endpoint.p50Micros(), endpoint.p99Micros(), endpoint.p999Micros(), endpoint.maxMicros());
+    }
+
+    /**
+     * Prints the relative change of the throughput and the percentiles against a previous run.
+     */
+    void printComparison(Report baseline) {
+        System.out.printf("%-18s %10s %10s %10s %10s%n", "change", "req/s", "p50", "p99", "p999");
+        endpoints.forEach((name, endpoint) -> {
+            Endpoint previous = baseline.endpoints().get(name);
+            if (previous != null) printComparison(name, endpoint, previous);
+        });
+        printComparison("total", total, baseline.total());
+    }
+
+    private static void printComparison(String name, Endpoint endpoint, Endpoint previous) {
+        System.out.printf("%-18s %10s %10s %10s %10s%n", name,
+                change(endpoint.throughput(), previous.throughput()),
+                change(endpoint.p50Micros(), previous.p50Micros()),
+                change(endpoint.p99Micros(), previous.p99Micros()),
+                change(endpoint.p999Micros(), previous.p999Micros()));
+    }
+
+    private static String change(double value, double previous) {
+        if (previous == 0) return "n/a";
+        return String.format("%+.1f%%", (value - previous) * 100 / previous);
+    }
+
+    record Endpoint(long requests,
+                    long errors,
+                    double throughput,
+                    Map<String, Long> statuses,
+                    double meanMicros,
+                    long p50Micros,
+                    long p99Micros,
+                    long p999Micros,
+                    long maxMicros) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.poly.loadtest;
+
+import com.poly.domains.dto.EventDto;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
+
+/**
+ * Weighted mix of requests to the application endpoints. Ids are drawn by the same Zipf
+ * distributions as the generated events, and analytics intervals have random positions
+ * and lengths from a day to the whole period.
+ */
+class Workload {
+
+    static final List<String> ENDPOINTS = List.of("book.get", "reader.get", "book.page", "reader.page",
+            "event.create", "book.popular", "book.popular.top", "reader.most");
+    static final String DEFAULT_MIX = "book.get:20,reader.get:20,book.page:5,reader.page:5,"
+            + "event.create:20,book.popular:10,book.popular.top:10,reader.most:10";
+
+    private static final Duration[] WINDOWS = {Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(30), Duration.ofDays(365)};
+    private static final int PAGE_SIZE = 100;
+
+    private final LibraryClient client;
+    private final Period period;
+    private final List<Integer> bookIds;
+    private final List<Integer> readerIds;
+    private final ZipfDistribution bookDistribution;
+    private final ZipfDistribution readerDistribution;
+    private final List<String> endpoints = new ArrayList<>();
+    private final int[] cumulativeWeights;
+
+    Workload(LibraryClient client, Period period, List<Integer> bookIds, List<Integer> readerIds,
+             double exponent, String mix) {
+        this.client = client;
+        this.period = period;
+        this.bookIds = bookIds;
+        this.readerIds = readerIds;
+        this.bookDistribution = new ZipfDistribution(bookIds.size(), exponent);
+        this.readerDistribution = new ZipfDistribution(readerIds.size(), exponent);
+        Map<String, Integer> weights = parseMix(mix);
+        cumulativeWeights = new int[weights.size()];
+        int sum = 0;
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            sum += weight.getValue();
+            cumulativeWeights[endpoints.size()] = sum;
+            endpoints.add(weight.getKey());
+        }
+    }
+
+    List<String> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Picks the next request. The random must not be shared between threads.
+     */
+    Request next(SplittableRandom random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int endpoint = 0;
+        while (cumulativeWeights[endpoint] <= value) endpoint++;
+        return new Request(endpoint, request(endpoints.get(endpoint), random));
+    }
+
+    private HttpRequest request(String endpoint, SplittableRandom random) {
+        return switch (endpoint) {
+            case "book.get" -> client.get("/book/" + book(random));
+            case "reader.get" -> client.get("/reader/" + reader(random));
+            case "book.page" -> client.get("/book/?after=" + random.nextInt(bookIds.size()) + "&limit=" + PAGE_SIZE);
+            case "reader.page" -> client.get("/reader/?after=" + random.nextInt(readerIds.size()) + "&limit=" + PAGE_SIZE);
+            case "event.create" -> client.post("/event/create", new EventDto(null, reader(random), book(random),
+                    random.nextBoolean() ? "TAKE_BOOK" : "RETURN_BOOK", randomTime(random).format(DATE_FORMATTER)));
+            case "book.popular" -> client.get("/book/popular?" + interval(random));
+            case "book.popular.top" -> client.get("/book/popular/top?limit=10&" + interval(random));
+            case "reader.most" -> client.get("/reader/most?" + interval(random));
+            default -> throw new IllegalStateException(endpoint);
+        };
+    }
+
+    private int book(SplittableRandom random) {
+        return bookIds.get(bookDistribution.sample(random));
+    }
+
+    private int reader(SplittableRandom random) {
+        return readerIds.get(readerDistribution.sample(random));
+    }
+
+    private String interval(SplittableRandom random) {
+        Duration window = WINDOWS[random.nextInt(WINDOWS.length)];
+        LocalDateTime start = randomTime(random).minus(window.dividedBy(2));
+        return "start=" + start.format(DATE_FORMATTER) + "&end=" + start.plus(window).format(DATE_FORMATTER);
+    }
+
+    private LocalDateTime randomTime(SplittableRandom random) {
+        long periodMicros = Duration.between(period.from(), period.to()).toNanos() / 1000;
+        return period.from().plusNanos(random.nextLong(periodMicros) * 1000);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String item : mix.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length != 2) throw new IllegalArgumentException("Mix item must be endpoint:weight: " + item);
+            int weight = Integer.parseInt(parts[1]);
+            if (weight > 0) weights.put(parts[0], weight);
+        }
+        if (weights.isEmpty()) throw new IllegalArgumentException("Mix has no endpoints: " + mix);
+        for (String endpoint : weights.keySet()) {
+            if (!ENDPOINTS.contains(endpoint)) throw new IllegalArgumentException("Unknown endpoint: " + endpoint);
+        }
+        return weights;
+    }
+
+    record Request(int endpoint, HttpRequest httpRequest) {
+    }
+}
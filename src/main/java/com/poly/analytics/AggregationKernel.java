@@ -0,0 +1,118 @@
+package com.poly.analytics;
+
+/**
+ * Building blocks of the analytics queries that work on primitive columns and do not allocate:
+ * counting by key with a time range and type filter, and selecting the keys with the largest counts.
+ * The counting map of a request can be taken from {@link #threadCounts()}, so that its table is
+ * reused by the next request of the same platform thread.
+ */
+public final class AggregationKernel {
+
+    /**
+     * Orders keys with equal counts by ascending id.
+     */
+    public static final TieBreak BY_ID = Integer::compare;
+
+    /**
+     * Largest table kept for the next request of a thread, about 850 KB; a larger one grown by a wide scan is replaced.
+     */
+    static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private static final ThreadLocal<IntLongHashMap> COUNTS = ThreadLocal.withInitial(IntLongHashMap::new);
+
+    private AggregationKernel() {}
+
+    /**
+     * Empty map owned by the current thread. It is cleared again by the next call on the same thread,
+     * so it must not be kept after the request. Virtual threads serve a single request each and get
+     * a new map that is not kept.
+     */
+    public static IntLongHashMap threadCounts() {
+        if (Thread.currentThread().isVirtual()) return new IntLongHashMap();
+        IntLongHashMap counts = COUNTS.get();
+        if (counts.capacity() > MAX_RETAINED_CAPACITY) {
+            counts = new IntLongHashMap();
+            COUNTS.set(counts);
+        } else {
+            counts.clear();
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the events with {@code from <= micros < to} by id, only those of the given type unless it is negative.
+     * Events with a negative id are skipped.
+     *
+     * @param micros timestamps of the events in ascending order
+     * @return the number of counted events
+     */
+    public static long countInRange(long[] micros, int[] ids, byte[] types, int size,
+                                    long from, long to, int type, IntLongHashMap counts) {
+        long counted = 0;
+        for (int i = lowerBound(micros, size, from); i < size && micros[i] < to; i++) {
+            if (type >= 0 && types[i] != type) continue;
+            int id = ids[i];
+            if (id < 0) continue;
+            counts.add(id, 1);
+            counted++;
+        }
+        return counted;
+    }
+
+    /**
+     * Index of the first element that is not less than the value.
+     */
+    public static int lowerBound(long[] sorted, int size, long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes at most {@code ids.length} keys with the largest counts and their counts into {@code ids}
+     * and {@code values}, ordered by count descending and then by the tie break.
+     *
+     * @return the number of keys written
+     */
+    public static int topK(IntLongHashMap counts, TieBreak tieBreak, int[] ids, long[] values) {
+        int limit = Math.min(ids.length, values.length);
+        int size = 0;
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            if (!counts.isUsed(slot)) continue;
+            int id = counts.keyAt(slot);
+            long value = counts.valueAt(slot);
+            if (size == limit && (limit == 0 || !isBefore(id, value, ids[size - 1], values[size - 1], tieBreak))) continue;
+            int position = size == limit ? size - 1 : size++;
+            while (position > 0 && isBefore(id, value, ids[position - 1], values[position - 1], tieBreak)) {
+                ids[position] = ids[position - 1];
+                values[position] = values[position - 1];
+                position--;
+            }
+            ids[position] = id;
+            values[position] = value;
+        }
+        return size;
+    }
+
+    private static boolean isBefore(int id, long count, int otherId, long otherCount, TieBreak tieBreak) {
+        if (count != otherCount) return count > otherCount;
+        return tieBreak.compare(id, otherId) < 0;
+    }
+
+    @FunctionalInterface
+    public interface TieBreak {
+
+        /**
+         * Negative if {@code id} comes before {@code otherId} when their counts are equal.
+         */
+        int compare(int id, int otherId);
+    }
+}
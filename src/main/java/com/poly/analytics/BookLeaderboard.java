@@ -0,0 +1,441 @@
+package com.poly.analytics;
+
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.EventRow;
+import com.poly.domains.dto.IdCount;
+import com.poly.repositories.BookRepository;
+import com.poly.repositories.EventRepository;
+import com.poly.utils.DayRange;
+import com.poly.utils.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory event counts per book, kept in hour, day and month buckets.
+ * An interval is answered from the largest buckets that fit into it, and the
+ * partial hours at its edges are scanned event by event, so the result is exactly
+ * the one of {@link BookRepository#findMostPopularBooks(LocalDateTime, LocalDateTime, int)}.
+ * Only the hour buckets of the last {@code library-helper.leaderboard.detail-hours} keep their
+ * events; partial hours older than that are counted in the database and the {@link EventArchive}.
+ * <p>
+ * Enabled with {@code library-helper.leaderboard.enabled}. The counts only see events
+ * created through this instance, so it is meant for single-instance deployments.
+ */
+@Component
+public class BookLeaderboard {
+
+    private final static Logger logger = LoggerFactory.getLogger(BookLeaderboard.class);
+
+    private static final long MICROS_PER_HOUR = 3_600_000_000L;
+    private static final long HOURS_PER_DAY = 24;
+
+    private final boolean enabled;
+    private final long detailHours;
+    private final EventRepository eventRepository;
+    private final BookRepository bookRepository;
+    private final EventArchive eventArchive;
+    private final QueryDeadline queryDeadline;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, HourBucket> hours = new HashMap<>();
+    private final Map<Long, IntLongHashMap> days = new HashMap<>();
+    private final Map<Integer, IntLongHashMap> months = new HashMap<>();
+    private final Map<Integer, String> authors = new HashMap<>();
+    private Set<Integer> recordedWhileLoading = new HashSet<>();
+    private long retainedFrom = Long.MIN_VALUE;
+    private long detailFrom = Long.MIN_VALUE;
+    private volatile boolean ready;
+
+    public BookLeaderboard(@Value("${library-helper.leaderboard.enabled}") boolean enabled,
+                           @Value("${library-helper.leaderboard.detail-hours}") long detailHours,
+                           EventRepository eventRepository,
+                           BookRepository bookRepository,
+                           EventArchive eventArchive,
+                           QueryDeadline queryDeadline) {
+        this.enabled = enabled;
+        this.detailHours = detailHours;
+        this.eventRepository = eventRepository;
+        this.bookRepository = bookRepository;
+        this.eventArchive = eventArchive;
+        this.queryDeadline = queryDeadline;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) return;
+        long startedAt = System.currentTimeMillis();
+        try (Stream<BookDto> books = bookRepository.streamAll()) {
+            books.forEach(book -> {
+                lock.writeLock().lock();
+                try {
+                    authors.putIfAbsent(book.id(), book.author());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+        eventArchive.loadLock().lock();
+        try (Stream<EventRow> events = eventRepository.streamAll()) {
+            events.forEach(event -> {
+                if (event.idBook() == null) return;
+                lock.writeLock().lock();
+                try {
+                    if (!recordedWhileLoading.contains(event.id())) {
+                        add(event.idBook(), toEventMicros(event.eventDatetime()));
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+            eventArchive.forEachEvent((micros, readerId, bookId, type) -> {
+                if (bookId < 0) return;
+                lock.writeLock().lock();
+                try {
+                    add(bookId, micros);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        } finally {
+            eventArchive.loadLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            recordedWhileLoading = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Book leaderboard loaded in {} ms: {} hour buckets", System.currentTimeMillis() - startedAt, hours.size());
+    }
+
+    /**
+     * Counts an event once the surrounding transaction, if any, commits.
+     */
+    public void record(Integer eventId, Integer bookId, LocalDateTime eventDatetime) {
+        if (!enabled || bookId == null) return;
+        long micros = toEventMicros(eventDatetime);
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    recordedWhileLoading.add(eventId);
+                }
+                add(bookId, micros);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Counts a batch of events with a single synchronization on the surrounding transaction.
+     */
+    public void recordAll(List<EventRow> events) {
+        if (!enabled || events.isEmpty()) return;
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                for (EventRow event : events) {
+                    if (event.idBook() == null) continue;
+                    if (!ready) {
+                        recordedWhileLoading.add(event.id());
+                    }
+                    add(event.idBook(), toEventMicros(event.eventDatetime()));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void updateAuthor(Integer bookId, String author) {
+        if (!enabled) return;
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                authors.put(bookId, author);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Forgets the events before {@code monthStart} once the surrounding transaction, if any, commits,
+     * and ignores the ones recorded or loaded later.
+     */
+    public void retainFrom(LocalDateTime monthStart) {
+        if (!enabled) return;
+        long micros = toMicros(monthStart);
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (micros <= retainedFrom) return;
+                retainedFrom = micros;
+                long hour = Math.floorDiv(micros, MICROS_PER_HOUR);
+                long day = Math.floorDiv(hour, HOURS_PER_DAY);
+                int month = monthOf(day);
+                hours.keySet().removeIf(bucket -> bucket < hour);
+                days.keySet().removeIf(bucket -> bucket < day);
+                months.keySet().removeIf(bucket -> bucket < month);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public OptionalInt mostPopularBook(LocalDateTime start, LocalDateTime end) {
+        int[] books = mostPopularBooks(start, end, 1);
+        return books.length == 0 ? OptionalInt.empty() : OptionalInt.of(books[0]);
+    }
+
+    /**
+     * Ids of at most {@code limit} books with the most events in the open interval (start, end),
+     * ordered by event count, then author, then id.
+     */
+    public int[] mostPopularBooks(LocalDateTime start, LocalDateTime end, int limit) {
+        long from = toMicros(start) + 1;
+        long to = toMicros(end) + (end.getNano() % 1000 == 0 ? 0 : 1);
+        IntLongHashMap counts = AggregationKernel.threadCounts();
+        List<long[]> undetailed = new ArrayList<>(2);
+        lock.readLock().lock();
+        try {
+            if (from < to) {
+                countInterval(from, to, counts, undetailed);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (long[] range : undetailed) {
+            countStored(range[0], range[1], counts);
+        }
+        lock.readLock().lock();
+        try {
+            return top(counts, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(int bookId, long micros) {
+        if (micros < retainedFrom) return;
+        long hour = Math.floorDiv(micros, MICROS_PER_HOUR);
+        long day = Math.floorDiv(hour, HOURS_PER_DAY);
+        dropOldDetail();
+        hours.computeIfAbsent(hour, h -> new HourBucket(h >= detailFrom)).add(bookId, micros - hour * MICROS_PER_HOUR);
+        days.computeIfAbsent(day, d -> new IntLongHashMap()).add(bookId, 1);
+        months.computeIfAbsent(monthOf(day), m -> new IntLongHashMap()).add(bookId, 1);
+    }
+
+    /**
+     * Drops the events of the hour buckets that fell out of the detail window, keeping their counts.
+     */
+    private void dropOldDetail() {
+        long cutoff = Math.floorDiv(toMicros(LocalDateTime.now()), MICROS_PER_HOUR) - detailHours;
+        if (cutoff <= detailFrom) return;
+        if (detailFrom == Long.MIN_VALUE || cutoff - detailFrom > hours.size()) {
+            hours.forEach((hour, bucket) -> {
+                if (hour < cutoff) bucket.dropDetail();
+            });
+        } else {
+            for (long hour = detailFrom; hour < cutoff; hour++) {
+                HourBucket bucket = hours.get(hour);
+                if (bucket != null) bucket.dropDetail();
+            }
+        }
+        detailFrom = cutoff;
+    }
+
+    private void countInterval(long from, long to, IntLongHashMap counts, List<long[]> undetailed) {
+        long firstHour = Math.floorDiv(from + MICROS_PER_HOUR - 1, MICROS_PER_HOUR);
+        long lastHour = Math.floorDiv(to, MICROS_PER_HOUR);
+        if (firstHour >= lastHour) {
+            scanEvents(from, to, counts, undetailed);
+            return;
+        }
+        scanEvents(from, firstHour * MICROS_PER_HOUR, counts, undetailed);
+        scanEvents(lastHour * MICROS_PER_HOUR, to, counts, undetailed);
+        countHours(firstHour, lastHour, counts);
+    }
+
+    private void countHours(long firstHour, long lastHour, IntLongHashMap counts) {
+        long firstDay = Math.floorDiv(firstHour + HOURS_PER_DAY - 1, HOURS_PER_DAY);
+        long lastDay = Math.floorDiv(lastHour, HOURS_PER_DAY);
+        if (firstDay >= lastDay) {
+            addHours(firstHour, lastHour, counts);
+            return;
+        }
+        addHours(firstHour, firstDay * HOURS_PER_DAY, counts);
+        addHours(lastDay * HOURS_PER_DAY, lastHour, counts);
+        countDays(firstDay, lastDay, counts);
+    }
+
+    private void countDays(long firstDay, long lastDay, IntLongHashMap counts) {
+        LocalDate first = LocalDate.ofEpochDay(firstDay);
+        int firstMonth = first.getDayOfMonth() == 1 ? monthOf(firstDay) : monthOf(firstDay) + 1;
+        int lastMonth = monthOf(lastDay);
+        if (firstMonth >= lastMonth) {
+            addDays(firstDay, lastDay, counts);
+            return;
+        }
+        addDays(firstDay, firstDayOf(firstMonth), counts);
+        addDays(firstDayOf(lastMonth), lastDay, counts);
+        for (int month = firstMonth; month < lastMonth; month++) {
+            IntLongHashMap bucket = months.get(month);
+            if (bucket != null) counts.addAll(bucket);
+        }
+    }
+
+    private void addHours(long firstHour, long lastHour, IntLongHashMap counts) {
+        for (long hour = firstHour; hour < lastHour; hour++) {
+            HourBucket bucket = hours.get(hour);
+            if (bucket != null) counts.addAll(bucket.counts);
+        }
+    }
+
+    private void addDays(long firstDay, long lastDay, IntLongHashMap counts) {
+        for (long day = firstDay; day < lastDay; day++) {
+            IntLongHashMap bucket = days.get(day);
+            if (bucket != null) counts.addAll(bucket);
+        }
+    }
+
+    /**
+     * Counts the events in [from, to), which lies within one hour. If that hour no longer keeps
+     * its events, the range is added to {@code undetailed} instead.
+     */
+    private void scanEvents(long from, long to, IntLongHashMap counts, List<long[]> undetailed) {
+        if (from >= to) return;
+        long lastHour = Math.floorDiv(to - 1, MICROS_PER_HOUR);
+        for (long hour = Math.floorDiv(from, MICROS_PER_HOUR); hour <= lastHour; hour++) {
+            HourBucket bucket = hours.get(hour);
+            if (bucket == null) continue;
+            long hourStart = hour * MICROS_PER_HOUR;
+            if (bucket.offsets == null) {
+                undetailed.add(new long[]{Math.max(from, hourStart), Math.min(to, hourStart + MICROS_PER_HOUR)});
+                continue;
+            }
+            for (int i = 0; i < bucket.size; i++) {
+                long micros = hourStart + Integer.toUnsignedLong(bucket.offsets[i]);
+                if (micros >= from && micros < to) {
+                    counts.add(bucket.bookIds[i], 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the events in [from, to) stored in the database and the archive.
+     */
+    private void countStored(long from, long to, IntLongHashMap counts) {
+        LocalDateTime start = toDateTime(from - 1);
+        LocalDateTime end = toDateTime(to);
+        queryDeadline.limitStatements();
+        for (IdCount count : bookRepository.countEvents(start, end)) {
+            counts.add(count.getId(), count.getEvents());
+        }
+        eventArchive.countBooks(start, end, new DayRange(end.toLocalDate(), end.toLocalDate()), counts);
+    }
+
+    private int[] top(IntLongHashMap counts, int limit) {
+        int[] ids = new int[Math.min(limit, counts.size())];
+        int size = AggregationKernel.topK(counts, this::compareByAuthor, ids, new long[ids.length]);
+        return Arrays.copyOf(ids, size);
+    }
+
+    private int compareByAuthor(int id, int otherId) {
+        String author = authors.get(id);
+        String otherAuthor = authors.get(otherId);
+        if (author != null && otherAuthor != null) {
+            int difference = author.compareTo(otherAuthor);
+            if (difference != 0) return difference;
+        } else if (author != otherAuthor) {
+            return author != null ? -1 : 1;
+        }
+        return Integer.compare(id, otherId);
+    }
+
+    private static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1000;
+    }
+
+    private static LocalDateTime toDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1000,
+                ZoneOffset.UTC);
+    }
+
+    private static long toEventMicros(LocalDateTime dateTime) {
+        return toMicros(dateTime) + (dateTime.getNano() % 1000 >= 500 ? 1 : 0);
+    }
+
+    private static int monthOf(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private static long firstDayOf(int month) {
+        return LocalDate.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, 1).toEpochDay();
+    }
+
+    /**
+     * Event counts of an hour, with the offset and book of every event while the hour is within the detail window.
+     */
+    private static class HourBucket {
+
+        private final IntLongHashMap counts = new IntLongHashMap();
+        private int[] offsets;
+        private int[] bookIds;
+        private int size;
+
+        private HourBucket(boolean detailed) {
+            if (detailed) {
+                offsets = new int[8];
+                bookIds = new int[8];
+            }
+        }
+
+        private void add(int bookId, long offsetMicros) {
+            counts.add(bookId, 1);
+            if (offsets == null) return;
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size << 1);
+                bookIds = Arrays.copyOf(bookIds, size << 1);
+            }
+            offsets[size] = (int) offsetMicros;
+            bookIds[size] = bookId;
+            size++;
+        }
+
+        private void dropDetail() {
+            offsets = null;
+            bookIds = null;
+            size = 0;
+        }
+    }
+}
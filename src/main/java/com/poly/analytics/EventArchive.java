@@ -0,0 +1,426 @@
+package com.poly.analytics;
+
+import com.poly.domains.dto.EventRow;
+import com.poly.utils.DayRange;
+import com.poly.utils.EventType;
+import com.poly.utils.TransactionUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier of the event history: append-only {@link EventSegment} files in a local directory.
+ * Every archived event is in exactly one segment and no longer in the {@code event} table, so the
+ * counts of the interval queries are the sum of both. Whole days are read from the daily activity
+ * tables, which keep archived events, so the archive is only scanned for the partial days at the
+ * edges of an interval. The decoded columns of the {@code cached-segments} segments counted last are
+ * kept on the heap, since the edges of the intervals asked for usually fall into the same few segments.
+ * <p>
+ * Enabled with {@code library-helper.archive.enabled}.
+ */
+@Component
+public class EventArchive {
+
+    private final static Logger logger = LoggerFactory.getLogger(EventArchive.class);
+
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int cachedSegments;
+    private final Map<EventSegment, EventSegment.Columns> decoded = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<EventSegment, EventSegment.Columns> eldest) {
+            return size() > cachedSegments;
+        }
+    };
+    private final List<EventSegment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile long retainedFrom = Long.MIN_VALUE;
+    private final ReadWriteLock moves = new ReentrantReadWriteLock();
+    private final Counter scannedEvents;
+
+    public EventArchive(@Value("${library-helper.archive.enabled}") boolean enabled,
+                        @Value("${library-helper.archive.directory}") Path directory,
+                        @Value("${library-helper.archive.cached-segments}") int cachedSegments,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.cachedSegments = cachedSegments;
+        this.scannedEvents = scannedEventsCounter(meterRegistry, "archive");
+    }
+
+    /**
+     * Counter of the events read by the in-process analytics scans of the given source.
+     */
+    static Counter scannedEventsCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("library.analytics.events.scanned")
+                .description("Events read by the analytics queries answered in the application")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        if (!enabled) return;
+        Files.createDirectories(directory);
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.sorted().toList();
+        }
+        long events = 0;
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            if (name.endsWith(TEMPORARY_SUFFIX)) {
+                Files.delete(path);
+            } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                EventSegment segment = EventSegment.open(path);
+                segments.add(segment);
+                events += segment.size();
+                long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                nextSequence.accumulateAndGet(sequence + 1, Math::max);
+            }
+        }
+        logger.info("Event archive opened: {} events in {} segments", events, segments.size());
+    }
+
+    /**
+     * Held by the loaders that read both the archive and the {@code event} table, so that no events
+     * move between the two while they read and each event is read exactly once.
+     */
+    public Lock loadLock() {
+        return moves.readLock();
+    }
+
+    /**
+     * Held while events move from the {@code event} table into the archive, until the move has committed.
+     */
+    public Lock moveLock() {
+        return moves.writeLock();
+    }
+
+    /**
+     * Starts writing new segments. They stay invisible to queries until the transaction of
+     * {@link Writer#publish()} commits.
+     */
+    public Writer writer(int segmentSize) {
+        return new Writer(segmentSize);
+    }
+
+    /**
+     * Adds the archived events of the book interval query to {@code counts}, see
+     * {@link com.poly.repositories.BookRepository#findMostPopularBooks}.
+     *
+     * @return the number of archived events counted
+     */
+    public long countBooks(LocalDateTime start, LocalDateTime end, DayRange fullDays, IntLongHashMap counts) {
+        return count(null, start, end, fullDays, false, counts);
+    }
+
+    /**
+     * Adds the archived events of the given type to {@code counts} of their readers, the same way
+     * as {@link #countBooks}.
+     */
+    public long countReaders(EventType eventType, LocalDateTime start, LocalDateTime end, DayRange fullDays, IntLongHashMap counts) {
+        return count(eventType, start, end, fullDays, true, counts);
+    }
+
+    /**
+     * Leaves the events before {@code start} out of the counts once the surrounding transaction, if any,
+     * commits. Their segments stay in the directory, like detached event partitions stay in the database.
+     */
+    public void retainFrom(LocalDateTime start) {
+        if (!enabled) return;
+        long micros = toMicros(start);
+        TransactionUtils.afterCommit(() -> retainedFrom = Math.max(retainedFrom, micros));
+    }
+
+    /**
+     * Passes every archived event to the consumer, segment by segment. Missing ids are passed as -1.
+     */
+    public void forEachEvent(EventConsumer consumer) {
+        for (EventSegment segment : segments) {
+            EventSegment.Columns columns = read(segment, true, true, true);
+            for (int i = 0; i < segment.size(); i++) {
+                consumer.accept(columns.micros()[i], columns.readerIds()[i], columns.bookIds()[i], columns.types()[i]);
+            }
+        }
+    }
+
+    /**
+     * Archived events with {@code from <= eventDatetime < to} in time order, for the export. The archive
+     * does not keep event ids, so the rows have none. The segments that overlap the range are merged
+     * in the order of their first events: a segment is decoded only once the merge reaches its first
+     * event and released once its events have been passed, so only the overlapping ones are held at a time.
+     */
+    public Iterator<EventRow> events(LocalDateTime from, LocalDateTime to) {
+        if (!enabled || segments.isEmpty()) return Collections.emptyIterator();
+        long fromMicros = Math.max(toMicros(from) + (from.getNano() % 1000 == 0 ? 0 : 1), retainedFrom);
+        long toMicros = toMicros(to) + (to.getNano() % 1000 == 0 ? 0 : 1);
+        List<EventSegment> pending = new ArrayList<>();
+        for (EventSegment segment : segments) {
+            if (segment.overlaps(fromMicros, toMicros)) pending.add(segment);
+        }
+        pending.sort(Comparator.comparingLong(EventSegment::firstMicros));
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(Cursor::micros));
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                openReached();
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public EventRow next() {
+                openReached();
+                Cursor cursor = cursors.poll();
+                if (cursor == null) throw new NoSuchElementException();
+                EventRow event = cursor.event();
+                cursor.index++;
+                if (cursor.hasEvent()) cursors.add(cursor);
+                return event;
+            }
+
+            /**
+             * Decodes the pending segments that start before the next event of the open ones.
+             */
+            private void openReached() {
+                while (next < pending.size()
+                        && (cursors.isEmpty() || pending.get(next).firstMicros() <= cursors.peek().micros())) {
+                    Cursor cursor = new Cursor(read(pending.get(next++), true, true, true), toMicros);
+                    cursor.index = cursor.firstAtOrAfter(fromMicros);
+                    if (cursor.hasEvent()) cursors.add(cursor);
+                }
+            }
+        };
+    }
+
+    private long count(EventType eventType, LocalDateTime start, LocalDateTime end, DayRange fullDays,
+                       boolean byReader, IntLongHashMap counts) {
+        if (!enabled || segments.isEmpty()) return 0;
+        long from = toMicros(start) + 1;
+        long to = toMicros(end) + (end.getNano() % 1000 == 0 ? 0 : 1);
+        if (fullDays.isEmpty()) {
+            return count(eventType, from, to, byReader, counts);
+        }
+        return count(eventType, from, toMicros(fullDays.first()), byReader, counts)
+                + count(eventType, toMicros(fullDays.last()), to, byReader, counts);
+    }
+
+    private long count(EventType eventType, long from, long to, boolean byReader, IntLongHashMap counts) {
+        from = Math.max(from, retainedFrom);
+        if (from >= to) return 0;
+        long counted = 0;
+        for (EventSegment segment : segments) {
+            if (!segment.overlaps(from, to)) continue;
+            EventSegment.Columns columns = decoded(segment, byReader, eventType != null);
+            scannedEvents.increment(segment.size());
+            counted += AggregationKernel.countInRange(columns.micros(),
+                    byReader ? columns.readerIds() : columns.bookIds(),
+                    columns.types(),
+                    segment.size(),
+                    from,
+                    to,
+                    eventType == null ? -1 : eventType.ordinal(),
+                    counts);
+        }
+        return counted;
+    }
+
+    /**
+     * Columns of the segment from the cache, or decoded and cached; without a cache only the needed ones are decoded.
+     */
+    private EventSegment.Columns decoded(EventSegment segment, boolean byReader, boolean types) {
+        if (cachedSegments <= 0) return read(segment, byReader, !byReader, types);
+        synchronized (decoded) {
+            EventSegment.Columns columns = decoded.get(segment);
+            if (columns != null) return columns;
+        }
+        EventSegment.Columns columns = read(segment, true, true, true);
+        synchronized (decoded) {
+            decoded.put(segment, columns);
+        }
+        return columns;
+    }
+
+    private static EventSegment.Columns read(EventSegment segment, boolean readers, boolean books, boolean types) {
+        try {
+            return segment.read(readers, books, types);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read event segment " + segment.path(), e);
+        }
+    }
+
+    private static LocalDateTime toDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1000,
+                ZoneOffset.UTC);
+    }
+
+    static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1000;
+    }
+
+    private static long toMicros(LocalDate date) {
+        return toMicros(date.atStartOfDay());
+    }
+
+    /**
+     * Position in the decoded columns of a segment.
+     */
+    private static class Cursor {
+
+        private static final EventType[] TYPES = EventType.values();
+
+        private final EventSegment.Columns columns;
+        private final long toMicros;
+        private int index;
+
+        private Cursor(EventSegment.Columns columns, long toMicros) {
+            this.columns = columns;
+            this.toMicros = toMicros;
+        }
+
+        private int firstAtOrAfter(long fromMicros) {
+            int position = Arrays.binarySearch(columns.micros(), fromMicros);
+            if (position < 0) return -position - 1;
+            while (position > 0 && columns.micros()[position - 1] == fromMicros) position--;
+            return position;
+        }
+
+        private boolean hasEvent() {
+            return index < columns.micros().length && columns.micros()[index] < toMicros;
+        }
+
+        private long micros() {
+            return columns.micros()[index];
+        }
+
+        private EventRow event() {
+            int readerId = columns.readerIds()[index];
+            int bookId = columns.bookIds()[index];
+            return new EventRow(null,
+                    readerId < 0 ? null : readerId,
+                    bookId < 0 ? null : bookId,
+                    TYPES[columns.types()[index]].name(),
+                    toDateTime(columns.micros()[index]));
+        }
+    }
+
+    @FunctionalInterface
+    public interface EventConsumer {
+
+        /**
+         * @param type ordinal of the {@link EventType}
+         */
+        void accept(long micros, int readerId, int bookId, byte type);
+    }
+
+    /**
+     * Splits events given in time order into segments of at most {@code segmentSize} events.
+     * Segments are written to temporary files and become part of the archive once the transaction
+     * of {@link #publish()} commits; {@link #discard()} removes them, also after they have been published.
+     */
+    public class Writer {
+
+        private final int segmentSize;
+        private final EventSegment.Builder builder = new EventSegment.Builder();
+        private final List<EventSegment> written = new ArrayList<>();
+        private final List<EventSegment> published = new ArrayList<>();
+
+        private Writer(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public void add(EventRow event) throws IOException {
+            long micros = toMicros(event.eventDatetime());
+            builder.add(micros, event.idReader(), event.idBook(), (byte) EventType.valueOf(event.eventType()).ordinal());
+            if (builder.size() == segmentSize) {
+                flush();
+            }
+        }
+
+        public int segments() {
+            return written.size() + published.size();
+        }
+
+        public void flush() throws IOException {
+            if (builder.size() == 0) return;
+            Path path = directory.resolve(SEGMENT_PREFIX + String.format("%019d", nextSequence.getAndIncrement())
+                    + SEGMENT_SUFFIX + TEMPORARY_SUFFIX);
+            written.add(builder.write(path));
+            builder.clear();
+        }
+
+        /**
+         * Moves the written segments to their final names. Queries see them once the surrounding transaction,
+         * which deletes the same events from the table, commits; if it rolls back they are discarded.
+         */
+        public void publish() throws IOException {
+            flush();
+            List<EventSegment> moved = new ArrayList<>();
+            for (EventSegment segment : written) {
+                String name = segment.path().getFileName().toString();
+                moved.add(segment.moveTo(directory.resolve(name.substring(0, name.length() - TEMPORARY_SUFFIX.length()))));
+            }
+            published.addAll(moved);
+            written.clear();
+            TransactionUtils.afterCompletion(() -> segments.addAll(moved), this::discard);
+        }
+
+        public void discard() {
+            segments.removeAll(published);
+            synchronized (decoded) {
+                decoded.keySet().removeAll(published);
+            }
+            for (EventSegment segment : published) delete(segment.path());
+            for (EventSegment segment : written) delete(segment.path());
+            published.clear();
+            written.clear();
+            builder.clear();
+        }
+
+        private void delete(Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.error("Failed to delete event segment {}", path, e);
+            }
+        }
+    }
+}
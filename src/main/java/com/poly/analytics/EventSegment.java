@@ -0,0 +1,231 @@
+package com.poly.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable archive file with events sorted by time, stored column by column: delta-encoded
+ * microsecond timestamps, varint reader and book ids and one byte per event type.
+ * Every column is compressed separately, so a scan only inflates the columns it needs.
+ * <p>
+ * Layout: magic, version, row count, first and last timestamp, then the timestamp, reader, book
+ * and type columns, each prefixed with its compressed length. Ids are stored as {@code id + 1},
+ * zero stands for a missing id.
+ */
+class EventSegment {
+
+    private static final int MAGIC = 0x4C484541;
+    private static final byte VERSION = 1;
+
+    private final Path path;
+    private final int size;
+    private final long firstMicros;
+    private final long lastMicros;
+
+    private EventSegment(Path path, int size, long firstMicros, long lastMicros) {
+        this.path = path;
+        this.size = size;
+        this.firstMicros = firstMicros;
+        this.lastMicros = lastMicros;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long firstMicros() {
+        return firstMicros;
+    }
+
+    boolean overlaps(long fromMicros, long toMicros) {
+        return firstMicros < toMicros && lastMicros >= fromMicros;
+    }
+
+    /**
+     * Reads the header only.
+     */
+    static EventSegment open(Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+                throw new IOException("Not an event segment: " + path);
+            }
+            return new EventSegment(path, input.readInt(), input.readLong(), input.readLong());
+        }
+    }
+
+    EventSegment moveTo(Path target) throws IOException {
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+        return new EventSegment(target, size, firstMicros, lastMicros);
+    }
+
+    /**
+     * Decodes the timestamps and, if requested, the reader ids, the book ids and the types.
+     * Columns that are not requested are skipped without inflating them.
+     */
+    Columns read(boolean readers, boolean books, boolean types) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            input.skipNBytes(Integer.BYTES + 1 + Integer.BYTES + Long.BYTES + Long.BYTES);
+            long[] micros = new long[size];
+            try (InputStream column = openColumn(input)) {
+                long previous = 0;
+                for (int i = 0; i < size; i++) {
+                    previous += readVarLong(column);
+                    micros[i] = previous;
+                }
+            }
+            int[] readerIds = readers ? readIds(input) : skipColumn(input);
+            int[] bookIds = books ? readIds(input) : skipColumn(input);
+            byte[] typeOrdinals = null;
+            if (types) {
+                try (InputStream column = openColumn(input)) {
+                    typeOrdinals = column.readNBytes(size);
+                }
+            }
+            return new Columns(micros, readerIds, bookIds, typeOrdinals);
+        }
+    }
+
+    private int[] readIds(DataInputStream input) throws IOException {
+        int[] ids = new int[size];
+        try (InputStream column = openColumn(input)) {
+            for (int i = 0; i < size; i++) {
+                ids[i] = (int) readVarLong(column) - 1;
+            }
+        }
+        return ids;
+    }
+
+    private static int[] skipColumn(DataInputStream input) throws IOException {
+        input.skipNBytes(input.readInt());
+        return null;
+    }
+
+    private static InputStream openColumn(DataInputStream input) throws IOException {
+        byte[] compressed = input.readNBytes(input.readInt());
+        return new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    private static long readVarLong(InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift >= Long.SIZE) throw new IOException("Malformed varint in event segment column");
+            int b = input.read();
+            if (b < 0) throw new IOException("Truncated event segment column");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static void writeVarLong(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    record Columns(long[] micros, int[] readerIds, int[] bookIds, byte[] types) {
+    }
+
+    /**
+     * Collects events in time order and writes them as one segment.
+     */
+    static class Builder {
+
+        private long[] micros = new long[1024];
+        private int[] readerIds = new int[1024];
+        private int[] bookIds = new int[1024];
+        private byte[] types = new byte[1024];
+        private int size;
+
+        void add(long eventMicros, Integer readerId, Integer bookId, byte type) {
+            if (size > 0 && eventMicros < micros[size - 1]) {
+                throw new IllegalArgumentException("Events must be added in time order");
+            }
+            if (size == micros.length) {
+                micros = Arrays.copyOf(micros, size << 1);
+                readerIds = Arrays.copyOf(readerIds, size << 1);
+                bookIds = Arrays.copyOf(bookIds, size << 1);
+                types = Arrays.copyOf(types, size << 1);
+            }
+            micros[size] = eventMicros;
+            readerIds[size] = readerId == null ? 0 : readerId + 1;
+            bookIds[size] = bookId == null ? 0 : bookId + 1;
+            types[size] = type;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        EventSegment write(Path path) throws IOException {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file)))) {
+                output.writeInt(MAGIC);
+                output.writeByte(VERSION);
+                output.writeInt(size);
+                output.writeLong(size == 0 ? 0 : micros[0]);
+                output.writeLong(size == 0 ? 0 : micros[size - 1]);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (OutputStream column = new BufferedOutputStream(new DeflaterOutputStream(buffer))) {
+                    long previous = 0;
+                    for (int i = 0; i < size; i++) {
+                        writeVarLong(column, micros[i] - previous);
+                        previous = micros[i];
+                    }
+                }
+                writeColumn(output, buffer);
+                writeColumn(output, compressIds(readerIds));
+                writeColumn(output, compressIds(bookIds));
+                buffer = new ByteArrayOutputStream();
+                try (OutputStream column = new BufferedOutputStream(new DeflaterOutputStream(buffer))) {
+                    column.write(types, 0, size);
+                }
+                writeColumn(output, buffer);
+                output.flush();
+                file.force(true);
+            }
+            return new EventSegment(path, size, size == 0 ? 0 : micros[0], size == 0 ? 0 : micros[size - 1]);
+        }
+
+        private ByteArrayOutputStream compressIds(int[] ids) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (OutputStream column = new BufferedOutputStream(new DeflaterOutputStream(buffer))) {
+                for (int i = 0; i < size; i++) {
+                    writeVarLong(column, Integer.toUnsignedLong(ids[i]));
+                }
+            }
+            return buffer;
+        }
+
+        private static void writeColumn(DataOutputStream output, ByteArrayOutputStream column) throws IOException {
+            output.writeInt(column.size());
+            column.writeTo(output);
+        }
+    }
+}
@@ -0,0 +1,570 @@
+package com.poly.analytics;
+
+import com.poly.domains.dto.EventRow;
+import com.poly.repositories.EventRepository;
+import com.poly.utils.EventType;
+import com.poly.utils.TransactionUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Off-heap copy of all events for the interval queries: a memory-mapped file of fixed-width records
+ * (book id, reader id, type, timestamp in microseconds) sorted by time. An interval is found by binary search
+ * and scanned sequentially, without creating objects per event.
+ * <p>
+ * The file is rebuilt from the database and the {@link EventArchive} on startup, and new events are appended
+ * after their transaction commits. Events older than the last stored one are kept on the heap in sorted runs,
+ * and merged into a new file in the background once there are more than {@code max-late-events} of them and
+ * more than 1/{@value #LATE_EVENTS_RATIO} of the stored events. Readers work on an immutable snapshot, so scans
+ * never block appends.
+ * <p>
+ * A scan of more than {@code library-helper.analytics.slice-size} events is split into slices that are counted
+ * in parallel on a dedicated fork/join pool of {@code library-helper.analytics.parallelism} threads
+ * (0 for one per processor), and the partial counts are merged.
+ * <p>
+ * Enabled with {@code library-helper.event-store.enabled}. Like {@link BookLeaderboard}, it only sees events
+ * created through this instance.
+ */
+@Component
+public class MappedEventStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(MappedEventStore.class);
+
+    private static final int RECORD_SIZE = 17;
+    private static final int BOOK_OFFSET = 0;
+    private static final int READER_OFFSET = 4;
+    private static final int TYPE_OFFSET = 8;
+    private static final int MICROS_OFFSET = 9;
+    private static final int REGION_SHIFT = 20;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final long REGION_SIZE = (long) RECORD_SIZE << REGION_SHIFT;
+    private static final int LATE_EVENTS_RATIO = 32;
+
+    private final boolean enabled;
+    private final Path path;
+    private final int maxLateEvents;
+    private final EventRepository eventRepository;
+    private final EventArchive eventArchive;
+    private final ForkJoinPool pool;
+    private final ExecutorService merger;
+    private final int sliceSize;
+    private final Counter scannedEvents;
+
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    private volatile Snapshot snapshot;
+    private volatile Future<?> merge;
+    private Set<Integer> recordedWhileLoading = new HashSet<>();
+    private List<EventRow> pending = new ArrayList<>();
+    private volatile long retainedFrom = Long.MIN_VALUE;
+    private volatile boolean ready;
+
+    public MappedEventStore(@Value("${library-helper.event-store.enabled}") boolean enabled,
+                            @Value("${library-helper.event-store.file}") Path path,
+                            @Value("${library-helper.event-store.max-late-events}") int maxLateEvents,
+                            @Value("${library-helper.analytics.parallelism}") int parallelism,
+                            @Value("${library-helper.analytics.slice-size}") int sliceSize,
+                            EventRepository eventRepository,
+                            EventArchive eventArchive,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.path = path;
+        this.maxLateEvents = maxLateEvents;
+        this.eventRepository = eventRepository;
+        this.eventArchive = eventArchive;
+        this.sliceSize = sliceSize;
+        this.scannedEvents = EventArchive.scannedEventsCounter(meterRegistry, "store");
+        if (parallelism == 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        this.pool = enabled && parallelism > 1 ? new ForkJoinPool(parallelism, MappedEventStore::newWorker, null, false) : null;
+        this.merger = enabled ? Executors.newSingleThreadExecutor(MappedEventStore::newMerger) : null;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("analytics-scan-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    private static Thread newMerger(Runnable task) {
+        Thread thread = new Thread(task, "event-store-merge");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+        if (merger != null) merger.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() throws IOException {
+        if (!enabled) return;
+        long startedAt = System.currentTimeMillis();
+        synchronized (writeLock) {
+            channel = open(path);
+            snapshot = Snapshot.EMPTY;
+        }
+        eventArchive.loadLock().lock();
+        try {
+            eventArchive.forEachEvent((micros, readerId, bookId, type) -> {
+                synchronized (writeLock) {
+                    append(micros, bookId, readerId, type);
+                }
+            });
+            try (Stream<EventRow> events = eventRepository.streamAllInTimeOrder()) {
+                events.forEach(event -> {
+                    synchronized (writeLock) {
+                        if (!recordedWhileLoading.contains(event.id())) {
+                            append(event);
+                        }
+                    }
+                });
+            }
+        } finally {
+            eventArchive.loadLock().unlock();
+        }
+        synchronized (writeLock) {
+            pending.forEach(this::append);
+            pending = null;
+            recordedWhileLoading = null;
+            ready = true;
+        }
+        logger.info("Event store loaded in {} ms: {} events, {} late", System.currentTimeMillis() - startedAt,
+                snapshot.size, lateEvents());
+    }
+
+    /**
+     * Number of events that are kept on the heap until the next merge.
+     */
+    int lateEvents() {
+        Snapshot current = snapshot;
+        return current.late.size() + current.merging.size();
+    }
+
+    /**
+     * Waits until the background merges that are running or about to start have finished.
+     */
+    void awaitMerge() throws InterruptedException, ExecutionException {
+        Future<?> current;
+        do {
+            current = merge;
+            if (current == null) return;
+            current.get();
+        } while (current != merge);
+    }
+
+    /**
+     * Adds the events once the surrounding transaction, if any, commits.
+     */
+    public void recordAll(List<EventRow> events) {
+        if (!enabled || events.isEmpty()) return;
+        TransactionUtils.afterCommit(() -> {
+            synchronized (writeLock) {
+                for (EventRow event : events) {
+                    if (ready) {
+                        append(event);
+                    } else {
+                        recordedWhileLoading.add(event.id());
+                        pending.add(event);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Leaves the events before {@code start} out of the counts once the surrounding transaction, if any,
+     * commits. They stay in the file until it is rebuilt.
+     */
+    public void retainFrom(LocalDateTime start) {
+        if (!enabled) return;
+        long micros = toMicros(start);
+        TransactionUtils.afterCommit(() -> retainedFrom = Math.max(retainedFrom, micros));
+    }
+
+    /**
+     * Adds the number of events per book in the open interval (start, end) to {@code counts}.
+     */
+    public void countBooks(LocalDateTime start, LocalDateTime end, IntLongHashMap counts) {
+        count(null, start, end, BOOK_OFFSET, counts);
+    }
+
+    /**
+     * Adds the number of events of the given type per reader in the open interval (start, end) to {@code counts}.
+     */
+    public void countReaders(EventType eventType, LocalDateTime start, LocalDateTime end, IntLongHashMap counts) {
+        count(eventType, start, end, READER_OFFSET, counts);
+    }
+
+    private void count(EventType eventType, LocalDateTime start, LocalDateTime end, int idOffset, IntLongHashMap counts) {
+        long from = Math.max(toMicros(start) + 1, retainedFrom);
+        long to = toMicros(end) + (end.getNano() % 1000 == 0 ? 0 : 1);
+        if (from >= to) return;
+        Snapshot current = snapshot;
+        int type = eventType == null ? -1 : eventType.ordinal();
+        long first = current.firstAtOrAfter(from);
+        long last = current.firstAtOrAfter(to);
+        scannedEvents.increment(last - first);
+        if (pool == null || last - first <= sliceSize) {
+            scan(current, first, last, type, idOffset, counts);
+        } else {
+            counts.addAll(pool.invoke(new ScanTask(current, first, last, type, idOffset, sliceSize)));
+        }
+        current.late.count(from, to, type, idOffset == BOOK_OFFSET, counts);
+        current.merging.count(from, to, type, idOffset == BOOK_OFFSET, counts);
+    }
+
+    private static void scan(Snapshot snapshot, long first, long last, int type, int idOffset, IntLongHashMap counts) {
+        for (long i = first; i < last; i++) {
+            MappedByteBuffer region = snapshot.regions[(int) (i >>> REGION_SHIFT)];
+            int offset = (int) (i & REGION_MASK) * RECORD_SIZE;
+            if (type >= 0 && region.get(offset + TYPE_OFFSET) != type) continue;
+            int id = region.getInt(offset + idOffset);
+            if (id >= 0) counts.add(id, 1);
+        }
+    }
+
+    private void append(EventRow event) {
+        append(toMicros(event.eventDatetime()),
+                event.idBook() == null ? -1 : event.idBook(),
+                event.idReader() == null ? -1 : event.idReader(),
+                (byte) EventType.valueOf(event.eventType()).ordinal());
+    }
+
+    private void append(long micros, int bookId, int readerId, byte type) {
+        Snapshot current = snapshot;
+        if (current.size > 0 && micros < current.lastMicros) {
+            snapshot = new Snapshot(current.regions, current.size, current.lastMicros,
+                    current.late.with(micros, bookId, readerId, type), current.merging);
+            mergeIfNeeded();
+            return;
+        }
+        MappedByteBuffer[] regions = current.regions;
+        int regionIndex = (int) (current.size >>> REGION_SHIFT);
+        if (regionIndex == regions.length) {
+            regions = Arrays.copyOf(regions, regionIndex + 1);
+            regions[regionIndex] = map(channel, regionIndex);
+        }
+        write(regions[regionIndex], (int) (current.size & REGION_MASK) * RECORD_SIZE, micros, bookId, readerId, type);
+        snapshot = new Snapshot(regions, current.size + 1, micros, current.late, current.merging);
+    }
+
+    /**
+     * Starts a background merge when there are too many late events and no merge is running.
+     * Called under the write lock.
+     */
+    private void mergeIfNeeded() {
+        Snapshot current = snapshot;
+        if (merger.isShutdown() || current.merging.size() > 0 || current.late.size() <= Math.max(maxLateEvents, current.size / LATE_EVENTS_RATIO)) {
+            return;
+        }
+        Snapshot base = new Snapshot(current.regions, current.size, current.lastMicros, LateEvents.EMPTY, current.late);
+        snapshot = base;
+        merge = merger.submit(() -> merge(base));
+    }
+
+    /**
+     * Writes the stored and the late events of the base snapshot into a new file in time order, then, under
+     * the write lock, copies the events appended meanwhile and switches to the new file. Events that arrive
+     * late during the merge wait for the next one. Scans that are still running keep reading the old mapping.
+     */
+    private void merge(Snapshot base) {
+        long startedAt = System.currentTimeMillis();
+        Path mergePath = path.resolveSibling(path.getFileName() + ".merge");
+        FileChannel mergeChannel = null;
+        try {
+            mergeChannel = open(mergePath);
+            List<MappedByteBuffer> regions = new ArrayList<>();
+            Run late = base.merging.sorted();
+            long merged = base.size + late.size();
+            long stored = 0;
+            int lateIndex = 0;
+            for (long i = 0; i < merged; i++) {
+                MappedByteBuffer region = region(regions, mergeChannel, i);
+                int offset = (int) (i & REGION_MASK) * RECORD_SIZE;
+                if (stored < base.size && (lateIndex == late.size() || base.micros(stored) <= late.micros[lateIndex])) {
+                    copy(base.regions, stored++, region, offset);
+                } else {
+                    write(region, offset, late.micros[lateIndex], late.bookIds[lateIndex], late.readerIds[lateIndex],
+                            late.types[lateIndex]);
+                    lateIndex++;
+                }
+            }
+            synchronized (writeLock) {
+                Snapshot current = snapshot;
+                long size = merged;
+                for (long i = base.size; i < current.size; i++, size++) {
+                    copy(current.regions, i, region(regions, mergeChannel, size), (int) (size & REGION_MASK) * RECORD_SIZE);
+                }
+                Files.move(mergePath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                FileChannel replaced = channel;
+                channel = mergeChannel;
+                snapshot = new Snapshot(regions.toArray(new MappedByteBuffer[0]), size, current.lastMicros,
+                        current.late, LateEvents.EMPTY);
+                close(replaced);
+                logger.info("Event store merged in {} ms: {} events", System.currentTimeMillis() - startedAt, size);
+                mergeIfNeeded();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Failed to merge late events into event store {}", path, e);
+            synchronized (writeLock) {
+                Snapshot current = snapshot;
+                snapshot = new Snapshot(current.regions, current.size, current.lastMicros,
+                        current.late.withAll(current.merging), LateEvents.EMPTY);
+            }
+            if (mergeChannel != null) {
+                close(mergeChannel);
+            }
+        }
+    }
+
+    private void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close event store file", e);
+        }
+    }
+
+    private static MappedByteBuffer region(List<MappedByteBuffer> regions, FileChannel channel, long index) {
+        int regionIndex = (int) (index >>> REGION_SHIFT);
+        if (regionIndex == regions.size()) {
+            regions.add(map(channel, regionIndex));
+        }
+        return regions.get(regionIndex);
+    }
+
+    private static void copy(MappedByteBuffer[] regions, long index, MappedByteBuffer target, int targetOffset) {
+        MappedByteBuffer source = regions[(int) (index >>> REGION_SHIFT)];
+        int offset = (int) (index & REGION_MASK) * RECORD_SIZE;
+        write(target, targetOffset, source.getLong(offset + MICROS_OFFSET), source.getInt(offset + BOOK_OFFSET),
+                source.getInt(offset + READER_OFFSET), source.get(offset + TYPE_OFFSET));
+    }
+
+    private static void write(MappedByteBuffer region, int offset, long micros, int bookId, int readerId, byte type) {
+        region.putInt(offset + BOOK_OFFSET, bookId);
+        region.putInt(offset + READER_OFFSET, readerId);
+        region.put(offset + TYPE_OFFSET, type);
+        region.putLong(offset + MICROS_OFFSET, micros);
+    }
+
+    private static FileChannel open(Path path) {
+        try {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open event store " + path, e);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int regionIndex) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, regionIndex * REGION_SIZE, REGION_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map event store region " + regionIndex, e);
+        }
+    }
+
+    private static long toMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1000;
+    }
+
+    /**
+     * Counts the records [first, last), splitting the range in halves down to the slice size.
+     */
+    private static class ScanTask extends RecursiveTask<IntLongHashMap> {
+
+        private final Snapshot snapshot;
+        private final long first;
+        private final long last;
+        private final int type;
+        private final int idOffset;
+        private final int sliceSize;
+
+        private ScanTask(Snapshot snapshot, long first, long last, int type, int idOffset, int sliceSize) {
+            this.snapshot = snapshot;
+            this.first = first;
+            this.last = last;
+            this.type = type;
+            this.idOffset = idOffset;
+            this.sliceSize = sliceSize;
+        }
+
+        @Override
+        protected IntLongHashMap compute() {
+            if (last - first <= sliceSize) {
+                IntLongHashMap counts = new IntLongHashMap();
+                scan(snapshot, first, last, type, idOffset, counts);
+                return counts;
+            }
+            long middle = (first + last) >>> 1;
+            ScanTask left = new ScanTask(snapshot, first, middle, type, idOffset, sliceSize);
+            left.fork();
+            IntLongHashMap counts = new ScanTask(snapshot, middle, last, type, idOffset, sliceSize).compute();
+            IntLongHashMap leftCounts = left.join();
+            if (leftCounts.size() > counts.size()) {
+                leftCounts.addAll(counts);
+                return leftCounts;
+            }
+            counts.addAll(leftCounts);
+            return counts;
+        }
+    }
+
+    /**
+     * Stored events with the late ones that are not merged yet, and those that a running merge is writing.
+     */
+    private record Snapshot(MappedByteBuffer[] regions, long size, long lastMicros, LateEvents late, LateEvents merging) {
+
+        private static final Snapshot EMPTY = new Snapshot(new MappedByteBuffer[0], 0, 0, LateEvents.EMPTY, LateEvents.EMPTY);
+
+        private long micros(long index) {
+            return regions[(int) (index >>> REGION_SHIFT)].getLong((int) (index & REGION_MASK) * RECORD_SIZE + MICROS_OFFSET);
+        }
+
+        private long firstAtOrAfter(long fromMicros) {
+            long low = 0;
+            long high = size;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (micros(middle) < fromMicros) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Immutable events that arrived out of time order, as sorted runs from the largest to the smallest.
+     * An insert adds a run of one event and merges it with the preceding runs that are not larger,
+     * so each event is copied a logarithmic number of times.
+     */
+    private static class LateEvents {
+
+        private static final LateEvents EMPTY = new LateEvents(new Run[0], 0);
+
+        private final Run[] runs;
+        private final int size;
+
+        private LateEvents(Run[] runs, int size) {
+            this.runs = runs;
+            this.size = size;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private LateEvents with(long eventMicros, int bookId, int readerId, byte type) {
+            return with(new Run(new long[]{eventMicros}, new int[]{bookId}, new int[]{readerId}, new byte[]{type}));
+        }
+
+        private LateEvents withAll(LateEvents others) {
+            LateEvents events = this;
+            for (Run run : others.runs) {
+                events = events.with(run);
+            }
+            return events;
+        }
+
+        private LateEvents with(Run run) {
+            int total = size + run.size();
+            int count = runs.length;
+            while (count > 0 && runs[count - 1].size() <= run.size()) {
+                run = runs[--count].merge(run);
+            }
+            Run[] merged = Arrays.copyOf(runs, count + 1);
+            merged[count] = run;
+            return new LateEvents(merged, total);
+        }
+
+        /**
+         * All events as one run.
+         */
+        private Run sorted() {
+            Run run = Run.EMPTY;
+            for (int i = runs.length - 1; i >= 0; i--) {
+                run = runs[i].merge(run);
+            }
+            return run;
+        }
+
+        private void count(long from, long to, int type, boolean byBook, IntLongHashMap counts) {
+            for (Run run : runs) {
+                AggregationKernel.countInRange(run.micros, byBook ? run.bookIds : run.readerIds, run.types, run.size(),
+                        from, to, type, counts);
+            }
+        }
+    }
+
+    private record Run(long[] micros, int[] bookIds, int[] readerIds, byte[] types) {
+
+        private static final Run EMPTY = new Run(new long[0], new int[0], new int[0], new byte[0]);
+
+        private int size() {
+            return micros.length;
+        }
+
+        /**
+         * Merges with a run of later arrivals, which go after the events of this run with the same time.
+         */
+        private Run merge(Run later) {
+            int size = size() + later.size();
+            Run merged = new Run(new long[size], new int[size], new int[size], new byte[size]);
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < size; k++) {
+                Run source = j == later.size() || i < size() && micros[i] <= later.micros[j] ? this : later;
+                int index = source == this ? i++ : j++;
+                merged.micros[k] = source.micros[index];
+                merged.bookIds[k] = source.bookIds[index];
+                merged.readerIds[k] = source.readerIds[index];
+                merged.types[k] = source.types[index];
+            }
+            return merged;
+        }
+    }
+}
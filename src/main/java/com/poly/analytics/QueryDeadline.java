@@ -0,0 +1,52 @@
+package com.poly.analytics;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of the analytics task running on the current thread, see {@link com.poly.services.AnalyticsExecutor}.
+ * The paths that aggregate events in PostgreSQL call {@link #limitStatements()} right before their queries,
+ * so only they set a statement timeout; answers counted in memory run no extra statements.
+ */
+@Component
+public class QueryDeadline {
+
+    private static final ThreadLocal<Long> deadline = new ThreadLocal<>();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public QueryDeadline(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Runs the task with the given {@link System#nanoTime()} deadline bound to the current thread.
+     */
+    public <T> T call(long deadlineNanos, Callable<T> task) throws Exception {
+        deadline.set(deadlineNanos);
+        try {
+            return task.call();
+        } finally {
+            deadline.remove();
+        }
+    }
+
+    /**
+     * Cancels the following statements of the current transaction once the deadline passes.
+     * Does nothing outside an analytics task or a transaction.
+     *
+     * @throws QueryTimeoutException if the deadline has already passed
+     */
+    public void limitStatements() {
+        Long deadlineNanos = deadline.get();
+        if (deadlineNanos == null || !TransactionSynchronizationManager.isActualTransactionActive()) return;
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remainingMillis <= 0) throw new QueryTimeoutException("Analytics deadline passed");
+        jdbcTemplate.execute("SET LOCAL statement_timeout = " + remainingMillis);
+    }
+}
@@ -0,0 +1,48 @@
+package com.poly.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Meters that Spring Boot does not register by itself: timers of the {@code @Timed} services,
+ * the Hibernate statistics and the callers waiting at the connection gate, which the pool
+ * metrics do not see.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder hibernateStatisticsMetrics(EntityManagerFactory entityManagerFactory) {
+        return new HibernateStatisticsMetrics(entityManagerFactory.unwrap(SessionFactory.class).getStatistics());
+    }
+
+    @Bean
+    public MeterBinder connectionGateMetrics(DataSource dataSource) {
+        return registry -> {
+            ConnectionGateDataSource gate;
+            try {
+                if (!dataSource.isWrapperFor(ConnectionGateDataSource.class)) return;
+                gate = dataSource.unwrap(ConnectionGateDataSource.class);
+            } catch (SQLException e) {
+                return;
+            }
+            Gauge.builder("library.datasource.gate.waiting", gate, ConnectionGateDataSource::getWaitingCount)
+                    .description("Callers waiting at the connection gate for a connection")
+                    .register(registry);
+        };
+    }
+}
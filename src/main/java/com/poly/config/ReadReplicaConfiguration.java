@@ -0,0 +1,126 @@
+package com.poly.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the read replicas, see {@link ReplicaRoutingDataSource}.
+ * Enabled with {@code library-helper.read-replicas.enabled}; the primary is still configured
+ * with {@code spring.datasource}.
+ * <p>
+ * Only the lazy proxy in front of the routing data source is an autowire candidate (and primary,
+ * for the auto-configuration conditions), so JPA, {@code JdbcTemplate}, the health check and the pool
+ * metrics see a single data source.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library-helper.read-replicas.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+    private final List<String> urls;
+    private final String username;
+    private final String password;
+    private final int poolSize;
+    private final Duration connectionTimeout;
+    private final Duration maxLag;
+    private final Duration checkInterval;
+    private final DataSourceProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final BeanFactory beanFactory;
+
+    public ReadReplicaConfiguration(@Value("${library-helper.read-replicas.urls}") List<String> urls,
+                                    @Value("${library-helper.read-replicas.username:${spring.datasource.username}}") String username,
+                                    @Value("${library-helper.read-replicas.password:${spring.datasource.password}}") String password,
+                                    @Value("${library-helper.read-replicas.pool-size}") int poolSize,
+                                    @Value("${library-helper.read-replicas.connection-timeout}") Duration connectionTimeout,
+                                    @Value("${library-helper.read-replicas.max-lag}") Duration maxLag,
+                                    @Value("${library-helper.read-replicas.check-interval}") Duration checkInterval,
+                                    DataSourceProperties properties,
+                                    MeterRegistry meterRegistry,
+                                    BeanFactory beanFactory) {
+        if (urls.isEmpty()) throw new IllegalArgumentException("library-helper.read-replicas.urls is empty");
+        this.urls = urls;
+        this.username = username;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.connectionTimeout = connectionTimeout;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.beanFactory = beanFactory;
+    }
+
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource() {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(autowireCandidate = false)
+    public ReplicaRoutingDataSource replicaRoutingDataSource() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setInitializationFailTimeout(-1);
+            replica.setReadOnly(true);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(replica.getPoolName(), replica);
+        }
+        // looked up by name, as the container holds it: behind the connection gate when there is one
+        ReplicaRoutingDataSource routingDataSource =
+                new ReplicaRoutingDataSource(beanFactory.getBean("primaryDataSource", DataSource.class), replicas, maxLag);
+        routingDataSource.scheduleChecks(checkInterval);
+        return routingDataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource());
+    }
+
+    @Bean
+    public MeterBinder readReplicaMetrics() {
+        ReplicaRoutingDataSource routingDataSource = replicaRoutingDataSource();
+        return registry -> {
+            for (String name : routingDataSource.getReplicaNames()) {
+                Gauge.builder("library.datasource.replica.lag", routingDataSource, dataSource -> dataSource.getLag(name))
+                        .description("Replication lag measured by the last check, NaN when the replica is unreachable")
+                        .baseUnit("seconds")
+                        .tag("replica", name)
+                        .register(registry);
+                Gauge.builder("library.datasource.replica.available", routingDataSource,
+                                dataSource -> dataSource.isAvailable(name) ? 1 : 0)
+                        .description("Whether read-only transactions are sent to the replica")
+                        .tag("replica", name)
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,308 @@
+package com.poly.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives the connections of read-only transactions from the replicas in turn and all other connections
+ * from the primary. A replica is skipped while it is not streaming from the primary, its replication lag
+ * is over {@code maxLag} or it fails to give a connection, until the next {@link #checkReplicas} finds it
+ * in sync again; with no replica available the reads go to the primary.
+ * <p>
+ * A replica also only serves a read once it has replayed the last committed write. After the commit of a
+ * read-write transaction, and before its after-commit callbacks publish new versions and cache evictions,
+ * the primary's WAL position is recorded. A replica whose last known replay position is behind it is asked
+ * for its current one on the connection about to be handed out, and is passed over if it is still behind.
+ * So a read never sees data older than the published versions, and with replicas that keep up the reads
+ * stay on them however often the primary is written. Writes outside a transaction are not tracked.
+ * <p>
+ * The transaction manager takes the connection before it marks the transaction read-only, so this
+ * data source only works behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private final static Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    static final String PRIMARY_POSITION_QUERY = "SELECT pg_current_wal_lsn()";
+
+    static final String REPLAY_POSITION_QUERY = "SELECT pg_last_wal_replay_lsn()";
+
+    /**
+     * Whether the server is a standby, whether its WAL receiver is streaming, whether it has replayed the
+     * primary's position given as the parameter, the seconds since the last replayed transaction
+     * (null when nothing is replayed) and the replayed position. A standby cut off from the primary has replayed all it has received,
+     * so comparing with its own receive position would keep it in rotation while it falls behind.
+     */
+    static final String REPLICA_QUERY = """
+            SELECT pg_is_in_recovery(),
+                   coalesce((SELECT status = 'streaming' FROM pg_stat_wal_receiver), false),
+                   coalesce(pg_last_wal_replay_lsn() >= CAST(? AS pg_lsn), false),
+                   extract(epoch FROM now() - pg_last_xact_replay_timestamp()),
+                   pg_last_wal_replay_lsn()""";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong lastCommitPosition = new AtomicLong();
+    /**
+     * {@link System#nanoTime} of a commit whose position could not be read, 0 when there is none;
+     * reads go to the primary until a check started later reads the primary's position.
+     */
+    private final AtomicLong unknownCommitAt = new AtomicLong();
+    private final ScheduledExecutorService checker =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-check-"));
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            Connection connection = primary.getConnection();
+            trackWrite(connection);
+            return connection;
+        }
+        if (replicas.isEmpty() || unknownCommitAt.get() != 0) {
+            return primary.getConnection();
+        }
+        long required = lastCommitPosition.get();
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((first + i) % replicas.size());
+            if (!replica.available) continue;
+            Connection connection;
+            try {
+                connection = replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.update(Double.NaN, false, e.getMessage());
+                continue;
+            }
+            if (replica.replayed >= required || replays(replica, connection, required)) {
+                return connection;
+            }
+            connection.close();
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Asks the replica for its replay position on the given connection.
+     */
+    private boolean replays(Replica replica, Connection connection, long required) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(REPLAY_POSITION_QUERY)) {
+            resultSet.next();
+            replica.replayed(parsePosition(resultSet.getString(1)));
+        } catch (SQLException e) {
+            replica.update(Double.NaN, false, e.getMessage());
+            return false;
+        }
+        return replica.replayed >= required;
+    }
+
+    /**
+     * Records the primary's position after the transaction commits, ahead of the other after-commit callbacks.
+     * The position is read on the transaction's own connection, which is still held at that point, so that
+     * a saturated pool or connection gate cannot hold up the commit.
+     */
+    private void trackWrite(Connection connection) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCommit() {
+                recordCommit(connection);
+            }
+        });
+    }
+
+    private void recordCommit(Connection connection) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(PRIMARY_POSITION_QUERY)) {
+            resultSet.next();
+            lastCommitPosition.accumulateAndGet(parsePosition(resultSet.getString(1)), Math::max);
+        } catch (SQLException e) {
+            logger.warn("Reads go to the primary until the next replica check, the commit position is unknown: {}",
+                    e.getMessage());
+            unknownCommitAt.set(nonZero(System.nanoTime()));
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connections are given with the credentials of the pools");
+    }
+
+    /**
+     * Checks the replicas right away and then every {@code interval} on a thread of its own,
+     * so that an unreachable replica holds up nothing but its own checks.
+     */
+    public void scheduleChecks(Duration interval) {
+        checker.scheduleWithFixedDelay(this::checkReplicas, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Measures the replication lag of every replica against the current position of the primary and takes
+     * the lagging, disconnected and unreachable ones out of rotation. A replica that has replayed the
+     * primary's position has lag 0, otherwise an idle primary would look like a lagging replica.
+     */
+    public void checkReplicas() {
+        long checkedAt = System.nanoTime();
+        String primaryPosition;
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(PRIMARY_POSITION_QUERY)) {
+            resultSet.next();
+            primaryPosition = resultSet.getString(1);
+        } catch (SQLException e) {
+            logger.warn("Replicas are not checked, the primary position is unknown: {}", e.getMessage());
+            return;
+        }
+        lastCommitPosition.accumulateAndGet(parsePosition(primaryPosition), Math::max);
+        unknownCommitAt.updateAndGet(unknownAt -> unknownAt != 0 && unknownAt - checkedAt < 0 ? 0 : unknownAt);
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(REPLICA_QUERY)) {
+                statement.setString(1, primaryPosition);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    boolean standby = resultSet.getBoolean(1);
+                    boolean streaming = resultSet.getBoolean(2);
+                    boolean caughtUp = resultSet.getBoolean(3);
+                    double lag = resultSet.getDouble(4);
+                    if (caughtUp) lag = 0;
+                    else if (resultSet.wasNull()) lag = Double.POSITIVE_INFINITY;
+                    replica.replayed(parsePosition(resultSet.getString(5)));
+                    if (!standby) {
+                        replica.update(Double.NaN, false, "not a standby");
+                    } else if (!streaming) {
+                        replica.update(lag, false, "WAL receiver is not streaming");
+                    } else {
+                        replica.update(lag, lag <= maxLagSeconds, "lag " + lag + " s");
+                    }
+                }
+            } catch (SQLException e) {
+                replica.update(Double.NaN, false, e.getMessage());
+            }
+        }
+    }
+
+    public List<String> getReplicaNames() {
+        return replicas.stream().map(replica -> replica.name).toList();
+    }
+
+    /**
+     * Replication lag in seconds measured by the last check, NaN when the replica was unreachable.
+     */
+    public double getLag(String name) {
+        return replica(name).lag;
+    }
+
+    public boolean isAvailable(String name) {
+        return replica(name).available;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return (T) this;
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    @Override
+    public void close() throws IOException {
+        checker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) closeable.close();
+        }
+    }
+
+    /**
+     * WAL position such as {@code 16/B374D848} as a number, -1 for null.
+     */
+    static long parsePosition(String position) {
+        if (position == null) return -1;
+        int slash = position.indexOf('/');
+        return Long.parseLong(position.substring(0, slash), 16) << 32 | Long.parseLong(position.substring(slash + 1), 16);
+    }
+
+    private static long nonZero(long nanoTime) {
+        return nanoTime == 0 ? 1 : nanoTime;
+    }
+
+    private Replica replica(String name) {
+        for (Replica replica : replicas) {
+            if (replica.name.equals(name)) return replica;
+        }
+        throw new IllegalArgumentException("Unknown replica " + name);
+    }
+
+    private static class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile double lag = Double.NaN;
+        private volatile boolean available;
+        /**
+         * Last known replay position; it only grows.
+         */
+        private volatile long replayed = -1;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private synchronized void replayed(long position) {
+            if (position > replayed) replayed = position;
+        }
+
+        private synchronized void update(double lag, boolean available, String reason) {
+            this.lag = lag;
+            if (this.available == available) return;
+            this.available = available;
+            if (available) {
+                logger.info("Replica {} is in rotation: {}", name, reason);
+            } else {
+                logger.warn("Replica {} is out of rotation, reads fall back to the primary: {}", name, reason);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.poly.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Per-request statement counting, see {@link StatementCounter} and {@link StatementBudgetInterceptor}.
+ * The budget is set with {@code library-helper.statement-budget.max-statements} and
+ * {@code library-helper.statement-budget.max-entity-loads}.
+ */
+@Configuration
+public class StatementBudgetConfiguration implements WebMvcConfigurer {
+
+    private final int maxStatements;
+    private final int maxEntityLoads;
+    private final MeterRegistry meterRegistry;
+
+    public StatementBudgetConfiguration(@Value("${library-helper.statement-budget.max-statements}") int maxStatements,
+                                        @Value("${library-helper.statement-budget.max-entity-loads}") int maxEntityLoads,
+                                        MeterRegistry meterRegistry) {
+        this.maxStatements = maxStatements;
+        this.maxEntityLoads = maxEntityLoads;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, StatementCounter.INSPECTOR);
+            properties.put(AvailableSettings.INTERCEPTOR, StatementCounter.INTERCEPTOR);
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StatementBudgetInterceptor(maxStatements, maxEntityLoads, meterRegistry));
+    }
+}
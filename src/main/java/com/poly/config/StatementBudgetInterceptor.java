@@ -0,0 +1,69 @@
+package com.poly.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Counts the statements and entity loads of every request, records them per endpoint and logs
+ * the requests that exceed the budget. A limit of 0 means no limit. Asynchronous requests keep
+ * one {@link StatementCounter.Counts} across their dispatches in a request attribute.
+ */
+public class StatementBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    private final static Logger logger = LoggerFactory.getLogger(StatementBudgetInterceptor.class);
+
+    private final int maxStatements;
+    private final int maxEntityLoads;
+    private final MeterRegistry meterRegistry;
+
+    public StatementBudgetInterceptor(int maxStatements, int maxEntityLoads, MeterRegistry meterRegistry) {
+        this.maxStatements = maxStatements;
+        this.maxEntityLoads = maxEntityLoads;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StatementCounter.Counts counts = (StatementCounter.Counts) request.getAttribute(StatementCounter.REQUEST_ATTRIBUTE);
+        if (counts == null) {
+            counts = new StatementCounter.Counts();
+            request.setAttribute(StatementCounter.REQUEST_ATTRIBUTE, counts);
+        }
+        StatementCounter.bind(counts);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StatementCounter.unbind();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        StatementCounter.unbind();
+        StatementCounter.Counts counts = (StatementCounter.Counts) request.getAttribute(StatementCounter.REQUEST_ATTRIBUTE);
+        if (counts == null) return;
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        summary("library.request.statements", "SQL statements prepared by Hibernate per request", uri)
+                .record(counts.statements());
+        summary("library.request.entity.loads", "Entities loaded by Hibernate per request", uri)
+                .record(counts.entityLoads());
+        if ((maxStatements > 0 && counts.statements() > maxStatements)
+                || (maxEntityLoads > 0 && counts.entityLoads() > maxEntityLoads)) {
+            meterRegistry.counter("library.request.over.budget", "uri", uri).increment();
+            logger.warn("{} {} exceeded the statement budget: {} (budget {} statements, {} entity loads)",
+                    request.getMethod(), request.getRequestURI(), counts, maxStatements, maxEntityLoads);
+        }
+    }
+
+    private DistributionSummary summary(String name, String description, String uri) {
+        return DistributionSummary.builder(name).description(description).tag("uri", uri).register(meterRegistry);
+    }
+}
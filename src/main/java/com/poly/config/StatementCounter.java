@@ -0,0 +1,96 @@
+package com.poly.config;
+
+import org.hibernate.Interceptor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.type.Type;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the SQL statements prepared and the entities loaded by Hibernate on behalf of the current
+ * request. The counts are bound to the thread that serves the request and follow it to the
+ * analytics threads through {@link #propagate(Runnable)}. Statements of a {@code JdbcTemplate}
+ * do not pass through Hibernate and are not counted.
+ */
+public final class StatementCounter {
+
+    /**
+     * Request attribute that holds the {@link Counts} of the request.
+     */
+    public static final String REQUEST_ATTRIBUTE = StatementCounter.class.getName() + ".COUNTS";
+
+    static final StatementInspector INSPECTOR = sql -> {
+        Counts counts = StatementCounter.counts.get();
+        if (counts != null) {
+            counts.statements.incrementAndGet();
+            if (sql.contains("nextval(")) counts.sequenceFetches.incrementAndGet();
+        }
+        return sql;
+    };
+
+    static final Interceptor INTERCEPTOR = new Interceptor() {
+        @Override
+        public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+            Counts counts = StatementCounter.counts.get();
+            if (counts != null) counts.entityLoads.incrementAndGet();
+            return false;
+        }
+    };
+
+    private static final ThreadLocal<Counts> counts = new ThreadLocal<>();
+
+    private StatementCounter() {}
+
+    static void bind(Counts requestCounts) {
+        counts.set(requestCounts);
+    }
+
+    static void unbind() {
+        counts.remove();
+    }
+
+    /**
+     * Task that adds its statements to the counts of the calling thread, if there are any.
+     */
+    public static Runnable propagate(Runnable task) {
+        Counts callerCounts = counts.get();
+        if (callerCounts == null) return task;
+        return () -> {
+            Counts previous = counts.get();
+            counts.set(callerCounts);
+            try {
+                task.run();
+            } finally {
+                counts.set(previous);
+            }
+        };
+    }
+
+    public static final class Counts {
+
+        private final AtomicInteger statements = new AtomicInteger();
+        private final AtomicInteger sequenceFetches = new AtomicInteger();
+        private final AtomicInteger entityLoads = new AtomicInteger();
+
+        public int statements() {
+            return statements.get();
+        }
+
+        /**
+         * Statements that fetched the next block of ids from a sequence, included in {@link #statements()}.
+         */
+        public int sequenceFetches() {
+            return sequenceFetches.get();
+        }
+
+        public int entityLoads() {
+            return entityLoads.get();
+        }
+
+        @Override
+        public String toString() {
+            return statements.get() + " statements (" + sequenceFetches.get() + " sequence fetches), "
+                    + entityLoads.get() + " entity loads";
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.poly.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serves requests on virtual threads instead of Tomcat's platform thread pool (requires Java 21),
+ * and puts a fair gate in front of the connection pool so that the pool size, not the thread count,
+ * bounds the database concurrency. Enabled with {@code library-helper.virtual-threads.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "library-helper.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    private final static Logger logger = LoggerFactory.getLogger(VirtualThreadsConfiguration.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(new VirtualThreadExecutor("http-virtual-"));
+    }
+
+    @Bean
+    public static BeanPostProcessor connectionGateBeanPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource dataSource)) return bean;
+                logger.info("Connection gate in front of {}: {} permits", beanName, dataSource.getMaximumPoolSize());
+                return new ConnectionGateDataSource(dataSource,
+                        dataSource.getMaximumPoolSize(),
+                        dataSource.getConnectionTimeout());
+            }
+        };
+    }
+}
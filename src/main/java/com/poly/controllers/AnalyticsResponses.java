@@ -0,0 +1,33 @@
+package com.poly.controllers;
+
+import com.poly.exceptions.AnalyticsUnavailableException;
+import com.poly.exceptions.NotFoundException;
+import com.poly.utils.ApplicationConstants;
+import org.slf4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletionException;
+
+class AnalyticsResponses {
+
+    /**
+     * Maps a failed analytics future to a response: 400 for {@link NotFoundException},
+     * 503 with Retry-After for {@link AnalyticsUnavailableException}. Other failures are rethrown.
+     */
+    static <T> ResponseEntity<T> failure(Throwable e, Logger logger) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof NotFoundException) {
+            logger.warn(cause.getMessage(), cause);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (cause instanceof AnalyticsUnavailableException) {
+            logger.warn(cause.getMessage());
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ApplicationConstants.ANALYTICS_RETRY_AFTER_SECONDS));
+            return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        throw e instanceof CompletionException completionException ? completionException : new CompletionException(cause);
+    }
+}
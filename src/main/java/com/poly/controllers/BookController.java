@@ -1,11 +1,16 @@
 package com.poly.controllers;
 
 import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.PageDto;
 import com.poly.exceptions.NotFoundException;
+import com.poly.services.AnalyticsExecutor;
 import com.poly.services.BookService;
+import com.poly.services.CollectionVersions;
 import com.poly.utils.ApplicationConstants;
+import com.poly.utils.VersionedCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,8 +21,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping(ApplicationConstants.API_V1 + "/book")
@@ -26,15 +33,37 @@ public class BookController {
     private final static Logger logger = LoggerFactory.getLogger(BookController.class);
 
     private final BookService bookService;
+    private final CollectionVersions collectionVersions;
+    private final AnalyticsExecutor analyticsExecutor;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService,
+                          CollectionVersions collectionVersions,
+                          AnalyticsExecutor analyticsExecutor) {
         this.bookService = bookService;
+        this.collectionVersions = collectionVersions;
+        this.analyticsExecutor = analyticsExecutor;
     }
 
     @GetMapping("/")
-    public ResponseEntity<List<BookDto>> getBooks() {
-        List<BookDto> books = bookService.getBooks();
-        return new ResponseEntity<>(books, HttpStatus.OK);
+    public ResponseEntity<List<BookDto>> getBooks(@RequestParam(required = false) Integer after,
+                                                  @RequestParam(required = false) Integer limit,
+                                                  WebRequest request) {
+        if (after == null && limit == null) {
+            if (collectionVersions.checkNotModified(request, VersionedCollection.BOOKS)) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+            List<BookDto> books = bookService.getBooks();
+            return new ResponseEntity<>(books, HttpStatus.OK);
+        }
+        if (limit == null) limit = ApplicationConstants.DEFAULT_PAGE_SIZE;
+        if (limit < 1 || limit > ApplicationConstants.MAX_PAGE_SIZE) return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        if (collectionVersions.checkNotModified(request, VersionedCollection.BOOKS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+        PageDto<BookDto> page = bookService.getBooks(after == null ? 0 : after, limit);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.nextCursor() != null) headers.set(ApplicationConstants.NEXT_CURSOR_HEADER, page.nextCursor());
+        return new ResponseEntity<>(page.items(), headers, HttpStatus.OK);
     }
 
     @PostMapping(value = "/create", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -55,14 +84,31 @@ public class BookController {
     }
 
     @GetMapping("/popular")
-    public ResponseEntity<BookDto> getMostPopularBook(@RequestParam String start, @RequestParam String end) {
-        if (start == null || end == null) return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        try {
-            BookDto book = bookService.getMostPopularBook(start, end);
-            return new ResponseEntity<>(book, HttpStatus.OK);
-        } catch (NotFoundException e) {
-            logger.warn(e.getMessage(), e);
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    public CompletableFuture<ResponseEntity<BookDto>> getMostPopularBook(@RequestParam String start,
+                                                                         @RequestParam String end,
+                                                                         WebRequest request) {
+        if (start == null || end == null) return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        if (collectionVersions.checkNotModified(request, VersionedCollection.EVENTS, VersionedCollection.BOOKS)) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
+        }
+        return analyticsExecutor.submit(() -> bookService.getMostPopularBook(start, end))
+                .thenApply(book -> new ResponseEntity<>(book, HttpStatus.OK))
+                .exceptionally(e -> AnalyticsResponses.failure(e, logger));
+    }
+
+    @GetMapping("/popular/top")
+    public CompletableFuture<ResponseEntity<List<BookDto>>> getMostPopularBooks(@RequestParam String start,
+                                                                                @RequestParam String end,
+                                                                                @RequestParam(defaultValue = "10") int limit,
+                                                                                WebRequest request) {
+        if (limit < 1 || limit > ApplicationConstants.MAX_TOP_SIZE) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        if (collectionVersions.checkNotModified(request, VersionedCollection.EVENTS, VersionedCollection.BOOKS)) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
         }
+        return analyticsExecutor.submit(() -> bookService.getMostPopularBooks(start, end, limit))
+                .thenApply(books -> new ResponseEntity<>(books, HttpStatus.OK))
+                .exceptionally(e -> AnalyticsResponses.failure(e, logger));
     }
 }
@@ -0,0 +1,29 @@
+package com.poly.controllers;
+
+import com.poly.domains.dto.CacheStatsDto;
+import com.poly.services.CacheService;
+import com.poly.utils.ApplicationConstants;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(ApplicationConstants.API_V1 + "/cache")
+public class CacheController {
+
+    private final CacheService cacheService;
+
+    public CacheController(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheStatsDto>> getCacheStats() {
+        List<CacheStatsDto> cacheStats = cacheService.getCacheStats();
+        return new ResponseEntity<>(cacheStats, HttpStatus.OK);
+    }
+}
@@ -1,12 +1,18 @@
 package com.poly.controllers;
 
+import com.poly.domains.dto.EventBatchItemDto;
 import com.poly.domains.dto.EventDto;
 import com.poly.domains.dto.EventTypeDto;
 import com.poly.exceptions.NotFoundException;
+import com.poly.services.CollectionVersions;
+import com.poly.services.EventIngestionQueue;
+import com.poly.services.EventPartitionService;
 import com.poly.services.EventService;
 import com.poly.utils.ApplicationConstants;
+import com.poly.utils.VersionedCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -14,8 +20,13 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 @RestController
@@ -25,14 +36,27 @@ public class EventController {
     private final static Logger logger = LoggerFactory.getLogger(EventController.class);
 
     private final EventService eventService;
+    private final EventIngestionQueue eventIngestionQueue;
+    private final EventPartitionService eventPartitionService;
+    private final CollectionVersions collectionVersions;
 
-    public EventController(EventService eventService) {
+    public EventController(EventService eventService,
+                           EventIngestionQueue eventIngestionQueue,
+                           EventPartitionService eventPartitionService,
+                           CollectionVersions collectionVersions) {
         this.eventService = eventService;
+        this.eventIngestionQueue = eventIngestionQueue;
+        this.eventPartitionService = eventPartitionService;
+        this.collectionVersions = collectionVersions;
     }
 
     @PostMapping(value = "/create", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<EventDto> createEvent(@RequestBody EventDto eventDto) {
         try {
+            if (eventIngestionQueue.isEnabled()) {
+                return enqueueEvent(eventDto);
+            }
+            eventPartitionService.ensurePartitions(List.of(eventDto));
             EventDto event = eventService.createEvent(eventDto);
             return new ResponseEntity<>(event, HttpStatus.CREATED);
         } catch (NotFoundException e) {
@@ -41,8 +65,50 @@ public class EventController {
         }
     }
 
+    private ResponseEntity<EventDto> enqueueEvent(EventDto eventDto) throws NotFoundException {
+        EventDto event = eventIngestionQueue.submit(eventDto);
+        if (event == null) {
+            logger.warn("Event queue is full");
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ApplicationConstants.INGESTION_RETRY_AFTER_SECONDS));
+            return new ResponseEntity<>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(event, HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<EventBatchItemDto>> createEvents(@RequestBody List<EventDto> eventDtos) {
+        if (eventDtos.isEmpty() || eventDtos.size() > ApplicationConstants.MAX_BATCH_SIZE) {
+            logger.warn("Unsupported batch size: {}", eventDtos.size());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        eventPartitionService.ensurePartitions(eventDtos);
+        List<EventBatchItemDto> results = eventService.createEvents(eventDtos);
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportEvents(@RequestParam String from, @RequestParam String to) {
+        LocalDateTime fromDateTime;
+        LocalDateTime toDateTime;
+        try {
+            fromDateTime = LocalDateTime.parse(from);
+            toDateTime = LocalDateTime.parse(to);
+        } catch (DateTimeParseException e) {
+            logger.warn(e.getMessage(), e);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        StreamingResponseBody body = outputStream -> eventService.exportEvents(fromDateTime, toDateTime, outputStream);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
     @GetMapping("/")
-    public ResponseEntity<List<EventTypeDto>> getEventTypes() {
+    public ResponseEntity<List<EventTypeDto>> getEventTypes(WebRequest request) {
+        if (collectionVersions.checkNotModified(request, VersionedCollection.EVENT_TYPES)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
         List<EventTypeDto> eventTypes = eventService.getEventTypes();
         return new ResponseEntity<>(eventTypes, HttpStatus.OK);
     }
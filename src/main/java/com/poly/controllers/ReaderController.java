@@ -1,11 +1,16 @@
 package com.poly.controllers;
 
+import com.poly.domains.dto.PageDto;
 import com.poly.domains.dto.ReaderDto;
 import com.poly.exceptions.NotFoundException;
+import com.poly.services.AnalyticsExecutor;
+import com.poly.services.CollectionVersions;
 import com.poly.services.ReaderService;
 import com.poly.utils.ApplicationConstants;
+import com.poly.utils.VersionedCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,8 +21,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping(ApplicationConstants.API_V1 + "/reader")
@@ -26,15 +33,37 @@ public class ReaderController {
     private final static Logger logger = LoggerFactory.getLogger(ReaderController.class);
 
     private final ReaderService readerService;
+    private final CollectionVersions collectionVersions;
+    private final AnalyticsExecutor analyticsExecutor;
 
-    public ReaderController(ReaderService readerService) {
+    public ReaderController(ReaderService readerService,
+                            CollectionVersions collectionVersions,
+                            AnalyticsExecutor analyticsExecutor) {
         this.readerService = readerService;
+        this.collectionVersions = collectionVersions;
+        this.analyticsExecutor = analyticsExecutor;
     }
 
     @GetMapping("/")
-    public ResponseEntity<List<ReaderDto>> getReaders() {
-        List<ReaderDto> readers = readerService.getReaders();
-        return new ResponseEntity<>(readers, HttpStatus.OK);
+    public ResponseEntity<List<ReaderDto>> getReaders(@RequestParam(required = false) Integer after,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      WebRequest request) {
+        if (after == null && limit == null) {
+            if (collectionVersions.checkNotModified(request, VersionedCollection.READERS)) {
+                return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+            }
+            List<ReaderDto> readers = readerService.getReaders();
+            return new ResponseEntity<>(readers, HttpStatus.OK);
+        }
+        if (limit == null) limit = ApplicationConstants.DEFAULT_PAGE_SIZE;
+        if (limit < 1 || limit > ApplicationConstants.MAX_PAGE_SIZE) return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        if (collectionVersions.checkNotModified(request, VersionedCollection.READERS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+        PageDto<ReaderDto> page = readerService.getReaders(after == null ? 0 : after, limit);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.nextCursor() != null) headers.set(ApplicationConstants.NEXT_CURSOR_HEADER, page.nextCursor());
+        return new ResponseEntity<>(page.items(), headers, HttpStatus.OK);
     }
 
     @PostMapping(value = "/create", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -55,14 +84,15 @@ public class ReaderController {
     }
 
     @GetMapping("/most")
-    public ResponseEntity<ReaderDto> getMostReader(@RequestParam String start, @RequestParam String end) {
-        if (start == null || end == null) return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        try {
-            ReaderDto reader = readerService.getMostReader(start, end);
-            return new ResponseEntity<>(reader, HttpStatus.OK);
-        } catch (NotFoundException e) {
-            logger.warn(e.getMessage(), e);
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    public CompletableFuture<ResponseEntity<ReaderDto>> getMostReader(@RequestParam String start,
+                                                                      @RequestParam String end,
+                                                                      WebRequest request) {
+        if (start == null || end == null) return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        if (collectionVersions.checkNotModified(request, VersionedCollection.EVENTS, VersionedCollection.READERS)) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.NOT_MODIFIED));
         }
+        return analyticsExecutor.submit(() -> readerService.getMostReader(start, end))
+                .thenApply(reader -> new ResponseEntity<>(reader, HttpStatus.OK))
+                .exceptionally(e -> AnalyticsResponses.failure(e, logger));
     }
 }
@@ -0,0 +1,13 @@
+package com.poly.domains.dto;
+
+/**
+ * Book columns as returned by the native ranking queries, which cannot construct a {@link BookDto}.
+ */
+public interface BookView {
+
+    Integer getId();
+
+    String getName();
+
+    String getAuthor();
+}
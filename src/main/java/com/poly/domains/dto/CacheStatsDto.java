@@ -0,0 +1,4 @@
+package com.poly.domains.dto;
+
+public record CacheStatsDto(String name, long size, long hitCount, long missCount, long evictionCount) {
+}
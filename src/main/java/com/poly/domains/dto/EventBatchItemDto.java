@@ -0,0 +1,4 @@
+package com.poly.domains.dto;
+
+public record EventBatchItemDto(int index, EventDto event, String error) {
+}
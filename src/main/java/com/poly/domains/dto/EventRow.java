@@ -0,0 +1,6 @@
+package com.poly.domains.dto;
+
+import java.time.LocalDateTime;
+
+public record EventRow(Integer id, Integer idReader, Integer idBook, String eventType, LocalDateTime eventDatetime) {
+}
@@ -0,0 +1,11 @@
+package com.poly.domains.dto;
+
+/**
+ * Number of events per book or reader, as returned by the native count queries.
+ */
+public interface IdCount {
+
+    Integer getId();
+
+    Long getEvents();
+}
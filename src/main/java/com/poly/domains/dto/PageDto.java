@@ -0,0 +1,6 @@
+package com.poly.domains.dto;
+
+import java.util.List;
+
+public record PageDto<T>(List<T> items, String nextCursor) {
+}
@@ -0,0 +1,13 @@
+package com.poly.domains.dto;
+
+/**
+ * Reader columns as returned by the native ranking queries, which cannot construct a {@link ReaderDto}.
+ */
+public interface ReaderView {
+
+    Integer getId();
+
+    String getFirstName();
+
+    String getLastName();
+}
@@ -0,0 +1,73 @@
+package com.poly.domains.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+@Entity
+@Table(name = "book_daily_activity")
+@IdClass(BookActivityEntity.Key.class)
+public class BookActivityEntity {
+
+    @Id
+    @Column(name = "activity_date", nullable = false)
+    private LocalDate activityDate;
+
+    @Id
+    @Column(name = "id_book", nullable = false)
+    private Integer idBook;
+
+    @Id
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Column(name = "event_count", nullable = false)
+    private long eventCount;
+
+    public BookActivityEntity() {}
+
+    public LocalDate getActivityDate() {
+        return activityDate;
+    }
+
+    public Integer getIdBook() {
+        return idBook;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public static class Key implements Serializable {
+
+        private LocalDate activityDate;
+        private Integer idBook;
+        private String eventType;
+
+        public Key() {}
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(activityDate, key.activityDate) &&
+                    Objects.equals(idBook, key.idBook) &&
+                    Objects.equals(eventType, key.eventType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(activityDate, idBook, eventType);
+        }
+    }
+}
@@ -48,10 +48,6 @@ public class ReaderEntity {
         return lastName;
     }
 
-    public Set<EventEntity> getEvents() {
-        return events;
-    }
-
     public void setId(Integer id) {
         this.id = id;
     }
@@ -63,8 +59,4 @@ public class ReaderEntity {
     public void setLastName(String lastName) {
         this.lastName = lastName;
     }
-
-    public void setEvents(Set<EventEntity> events) {
-        this.events = events;
-    }
 }
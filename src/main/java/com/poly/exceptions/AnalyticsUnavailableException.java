@@ -0,0 +1,12 @@
+package com.poly.exceptions;
+
+public class AnalyticsUnavailableException extends RuntimeException {
+
+    public AnalyticsUnavailableException(String message) {
+        super(message);
+    }
+
+    public AnalyticsUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
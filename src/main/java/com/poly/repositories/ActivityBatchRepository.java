@@ -0,0 +1,75 @@
+package com.poly.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Batched upserts into the daily activity tables: one JDBC batch instead of a statement per counter.
+ */
+@Repository
+public class ActivityBatchRepository {
+
+    private final static String BOOK_UPSERT = """
+            INSERT INTO book_daily_activity (activity_date, id_book, event_type, event_count)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (activity_date, id_book, event_type)
+            DO UPDATE SET event_count = book_daily_activity.event_count + EXCLUDED.event_count""";
+
+    private final static String READER_UPSERT = """
+            INSERT INTO reader_daily_activity (activity_date, id_reader, event_type, event_count)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (activity_date, id_reader, event_type)
+            DO UPDATE SET event_count = reader_daily_activity.event_count + EXCLUDED.event_count""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ActivityBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Blocks the writes to both tables until the end of the current transaction; reads go on.
+     */
+    public void lockTables() {
+        jdbcTemplate.execute("LOCK TABLE book_daily_activity, reader_daily_activity IN EXCLUSIVE MODE");
+    }
+
+    public void incrementBooks(SortedMap<Key, Long> deltas) {
+        jdbcTemplate.batchUpdate(BOOK_UPSERT, toArguments(deltas));
+    }
+
+    public void incrementReaders(SortedMap<Key, Long> deltas) {
+        jdbcTemplate.batchUpdate(READER_UPSERT, toArguments(deltas));
+    }
+
+    private static List<Object[]> toArguments(Map<Key, Long> deltas) {
+        List<Object[]> arguments = new ArrayList<>(deltas.size());
+        for (Map.Entry<Key, Long> delta : deltas.entrySet()) {
+            Key key = delta.getKey();
+            arguments.add(new Object[]{key.activityDate(), key.id(), key.eventType(), delta.getValue()});
+        }
+        return arguments;
+    }
+
+    /**
+     * Ordered so that concurrent batches lock the counters in the same order.
+     */
+    public record Key(LocalDate activityDate, Integer id, String eventType) implements Comparable<Key> {
+
+        private final static Comparator<Key> ORDER = Comparator.comparing(Key::activityDate)
+                .thenComparing(Key::id)
+                .thenComparing(Key::eventType);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
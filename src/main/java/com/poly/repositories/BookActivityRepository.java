@@ -0,0 +1,29 @@
+package com.poly.repositories;
+
+import com.poly.domains.entities.BookActivityEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface BookActivityRepository extends JpaRepository<BookActivityEntity, BookActivityEntity.Key> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO book_daily_activity (activity_date, id_book, event_type, event_count)
+            SELECT CAST(e.event_datetime AS date), e.id_book, e.event_type, COUNT(*) FROM event e
+            WHERE e.id_book IS NOT NULL
+            GROUP BY CAST(e.event_datetime AS date), e.id_book, e.event_type
+            ON CONFLICT (activity_date, id_book, event_type)
+            DO UPDATE SET event_count = book_daily_activity.event_count + EXCLUDED.event_count""",
+            nativeQuery = true)
+    int rebuildFromEvents();
+
+    @Modifying
+    @Query(value = "DELETE FROM book_daily_activity WHERE activity_date < :date", nativeQuery = true)
+    int deleteBefore(@Param("date") LocalDate date);
+}
@@ -1,9 +1,119 @@
 package com.poly.repositories;
 
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.BookView;
+import com.poly.domains.dto.IdCount;
 import com.poly.domains.entities.BookEntity;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
 @Repository
 public interface BookRepository extends JpaRepository<BookEntity, Integer> {
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.poly.domains.dto.BookDto(b.id, b.name, b.author) FROM BookEntity b")
+    Stream<BookDto> streamAll();
+
+    @Query("SELECT new com.poly.domains.dto.BookDto(b.id, b.name, b.author) FROM BookEntity b")
+    List<BookDto> listAll();
+
+    @Query("SELECT new com.poly.domains.dto.BookDto(b.id, b.name, b.author) FROM BookEntity b WHERE b.id = :id")
+    Optional<BookDto> findDtoById(@Param("id") int id);
+
+    @Query("SELECT new com.poly.domains.dto.BookDto(b.id, b.name, b.author) FROM BookEntity b WHERE b.id IN :ids")
+    List<BookDto> findAllDtoById(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT new com.poly.domains.dto.BookDto(b.id, b.name, b.author) FROM BookEntity b WHERE b.id > :after ORDER BY b.id")
+    List<BookDto> findPageAfter(@Param("after") int after, Pageable pageable);
+
+    @Query("SELECT b.id FROM BookEntity b WHERE b.id IN :ids")
+    Set<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Books with the largest number of events in the open interval (start, end).
+     * Ties are broken by author in ascending (binary) order, then by id.
+     */
+    @Query(value = """
+            SELECT b.id AS id, b.name AS name, b.author AS author FROM event e
+            JOIN book b ON b.id = e.id_book
+            WHERE e.event_datetime > :start AND e.event_datetime < :end
+            GROUP BY b.id
+            ORDER BY COUNT(*) DESC, b.author COLLATE "C" ASC, b.id ASC
+            LIMIT :limit""",
+            nativeQuery = true)
+    List<BookView> findMostPopularBooks(@Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end,
+                                        @Param("limit") int limit);
+
+    /**
+     * Same as the query above, but whole days [firstDay, lastDay) are read from book_daily_activity
+     * and only the partial days at the edges of the interval from event.
+     */
+    @Query(value = """
+            SELECT b.id AS id, b.name AS name, b.author AS author FROM book b
+            JOIN (
+                SELECT t.id_book, SUM(t.cnt) AS cnt FROM (
+                    SELECT a.id_book, a.event_count AS cnt FROM book_daily_activity a
+                    WHERE a.activity_date >= :firstDay AND a.activity_date < :lastDay
+                    UNION ALL
+                    SELECT e.id_book, COUNT(*) AS cnt FROM event e
+                    WHERE (e.event_datetime > :start AND e.event_datetime < CAST(:firstDay AS timestamp))
+                       OR (e.event_datetime >= CAST(:lastDay AS timestamp) AND e.event_datetime < :end)
+                    GROUP BY e.id_book
+                ) t
+                GROUP BY t.id_book
+            ) c ON c.id_book = b.id
+            ORDER BY c.cnt DESC, b.author COLLATE "C" ASC, b.id ASC
+            LIMIT :limit""",
+            nativeQuery = true)
+    List<BookView> findMostPopularBooks(@Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end,
+                                        @Param("firstDay") LocalDate firstDay,
+                                        @Param("lastDay") LocalDate lastDay,
+                                        @Param("limit") int limit);
+
+    /**
+     * Event counts of all books in the open interval (start, end), for merging with archived events.
+     */
+    @Query(value = """
+            SELECT e.id_book AS id, COUNT(*) AS events FROM event e
+            WHERE e.id_book IS NOT NULL AND e.event_datetime > :start AND e.event_datetime < :end
+            GROUP BY e.id_book""",
+            nativeQuery = true)
+    List<IdCount> countEvents(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * Same as the query above, with whole days [firstDay, lastDay) read from book_daily_activity.
+     */
+    @Query(value = """
+            SELECT t.id_book AS id, SUM(t.cnt) AS events FROM (
+                SELECT a.id_book, a.event_count AS cnt FROM book_daily_activity a
+                WHERE a.activity_date >= :firstDay AND a.activity_date < :lastDay
+                UNION ALL
+                SELECT e.id_book, COUNT(*) AS cnt FROM event e
+                WHERE (e.event_datetime > :start AND e.event_datetime < CAST(:firstDay AS timestamp))
+                   OR (e.event_datetime >= CAST(:lastDay AS timestamp) AND e.event_datetime < :end)
+                GROUP BY e.id_book
+            ) t
+            WHERE t.id_book IS NOT NULL
+            GROUP BY t.id_book""",
+            nativeQuery = true)
+    List<IdCount> countEvents(@Param("start") LocalDateTime start,
+                              @Param("end") LocalDateTime end,
+                              @Param("firstDay") LocalDate firstDay,
+                              @Param("lastDay") LocalDate lastDay);
 }
@@ -0,0 +1,15 @@
+package com.poly.repositories;
+
+import java.time.LocalDateTime;
+
+public interface EventInsertRepository {
+
+    /**
+     * Inserts the event and adds it to the book and reader daily activity counters in one statement.
+     * The id comes from the entity's sequence generator, so it shares the allocated blocks with
+     * {@link EventRepository#saveAll}; a missing reader or book fails the statement with a foreign key violation.
+     *
+     * @return the id of the inserted event
+     */
+    int insertCounted(Integer idReader, Integer idBook, String eventType, LocalDateTime eventDatetime);
+}
@@ -0,0 +1,55 @@
+package com.poly.repositories;
+
+import com.poly.domains.entities.EventEntity;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.time.LocalDateTime;
+
+public class EventInsertRepositoryImpl implements EventInsertRepository {
+
+    private final static String INSERT_COUNTED = """
+            WITH inserted AS (
+                INSERT INTO event (id, id_reader, id_book, event_type, event_datetime)
+                VALUES (:id, :idReader, :idBook, :eventType, :eventDatetime)
+                RETURNING id_reader, id_book, event_type, CAST(event_datetime AS date) AS activity_date
+            ), books AS (
+                INSERT INTO book_daily_activity (activity_date, id_book, event_type, event_count)
+                SELECT activity_date, id_book, event_type, 1 FROM inserted
+                ON CONFLICT (activity_date, id_book, event_type)
+                DO UPDATE SET event_count = book_daily_activity.event_count + EXCLUDED.event_count
+            )
+            INSERT INTO reader_daily_activity (activity_date, id_reader, event_type, event_count)
+            SELECT activity_date, id_reader, event_type, 1 FROM inserted
+            ON CONFLICT (activity_date, id_reader, event_type)
+            DO UPDATE SET event_count = reader_daily_activity.event_count + EXCLUDED.event_count""";
+
+    private final EntityManager entityManager;
+
+    public EventInsertRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public int insertCounted(Integer idReader, Integer idBook, String eventType, LocalDateTime eventDatetime) {
+        int id = nextId();
+        entityManager.createNativeQuery(INSERT_COUNTED)
+                .setParameter("id", id)
+                .setParameter("idReader", idReader)
+                .setParameter("idBook", idBook)
+                .setParameter("eventType", eventType)
+                .setParameter("eventDatetime", eventDatetime)
+                .executeUpdate();
+        return id;
+    }
+
+    private int nextId() {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(EventEntity.class);
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) persister.getGenerator();
+        return (Integer) generator.generate(session, null, null, EventType.INSERT);
+    }
+}
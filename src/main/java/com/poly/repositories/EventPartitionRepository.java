@@ -0,0 +1,113 @@
+package com.poly.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * DDL for the monthly range partitions of the {@code event} table. A month is stored in a partition
+ * named {@code event_yYYYYmMM}.
+ */
+@Repository
+public class EventPartitionRepository {
+
+    private final static String UNPARTITIONED_TABLE = "event_unpartitioned";
+    private final static DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'event_y'yyyy'm'MM");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT coalesce((SELECT relkind = 'p' FROM pg_class WHERE oid = to_regclass('event')), false)",
+                Boolean.class));
+    }
+
+    public Optional<LocalDateTime> findFirstEventDatetime() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT min(event_datetime) FROM event", LocalDateTime.class));
+    }
+
+    public Optional<LocalDateTime> findLastEventDatetime() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT max(event_datetime) FROM event", LocalDateTime.class));
+    }
+
+    /**
+     * Replaces the plain {@code event} table with an empty partitioned one of the same columns, foreign keys
+     * and indexes. The primary key becomes (id, event_datetime), as it has to contain the partition key.
+     * The old rows stay in {@code event_unpartitioned} until {@link #moveUnpartitionedRows()}.
+     * Must run in a transaction.
+     */
+    public void createPartitionedTable() {
+        jdbcTemplate.execute("LOCK TABLE event IN ACCESS EXCLUSIVE MODE");
+        String primaryKey = jdbcTemplate.queryForObject(
+                "SELECT conname FROM pg_constraint WHERE conrelid = 'event'::regclass AND contype = 'p'", String.class);
+        List<Map<String, Object>> foreignKeys = jdbcTemplate.queryForList("""
+                SELECT conname, pg_get_constraintdef(oid) AS definition
+                FROM pg_constraint
+                WHERE conrelid = 'event'::regclass AND contype = 'f'""");
+        List<Map<String, Object>> indexes = jdbcTemplate.queryForList("""
+                SELECT c.relname, pg_get_indexdef(i.indexrelid) AS definition
+                FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE i.indrelid = 'event'::regclass AND NOT i.indisprimary""");
+
+        jdbcTemplate.execute("ALTER TABLE event RENAME TO " + UNPARTITIONED_TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + UNPARTITIONED_TABLE + " DROP CONSTRAINT " + primaryKey);
+        for (Map<String, Object> index : indexes) {
+            jdbcTemplate.execute("DROP INDEX " + index.get("relname"));
+        }
+        jdbcTemplate.execute("CREATE TABLE event (LIKE " + UNPARTITIONED_TABLE + " INCLUDING DEFAULTS)"
+                + " PARTITION BY RANGE (event_datetime)");
+        jdbcTemplate.execute("ALTER TABLE event ADD CONSTRAINT " + primaryKey + " PRIMARY KEY (id, event_datetime)");
+        for (Map<String, Object> foreignKey : foreignKeys) {
+            jdbcTemplate.execute("ALTER TABLE event ADD CONSTRAINT " + foreignKey.get("conname") + " " + foreignKey.get("definition"));
+        }
+        for (Map<String, Object> index : indexes) {
+            jdbcTemplate.execute((String) index.get("definition"));
+        }
+    }
+
+    /**
+     * Moves the rows left by {@link #createPartitionedTable()} into the partitions and drops the old table.
+     */
+    public int moveUnpartitionedRows() {
+        int moved = jdbcTemplate.update("INSERT INTO event SELECT * FROM " + UNPARTITIONED_TABLE);
+        jdbcTemplate.execute("DROP TABLE " + UNPARTITIONED_TABLE);
+        return moved;
+    }
+
+    public List<YearMonth> findPartitionMonths() {
+        return jdbcTemplate.queryForList("""
+                        SELECT c.relname
+                        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = 'event'::regclass
+                        ORDER BY c.relname""", String.class)
+                .stream()
+                .map(name -> YearMonth.parse(name, PARTITION_NAME))
+                .toList();
+    }
+
+    public void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF event"
+                + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    /**
+     * Detaches the partition of the month, it remains as a standalone table with the same name.
+     */
+    public void detachPartition(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE event DETACH PARTITION " + partitionName(month));
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PARTITION_NAME.format(month);
+    }
+}
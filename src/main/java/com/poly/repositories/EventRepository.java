@@ -1,9 +1,52 @@
 package com.poly.repositories;
 
+import com.poly.domains.dto.EventRow;
 import com.poly.domains.entities.EventEntity;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
 @Repository
-public interface EventRepository extends JpaRepository<EventEntity, Integer> {
+public interface EventRepository extends JpaRepository<EventEntity, Integer>, EventInsertRepository {
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            SELECT new com.poly.domains.dto.EventRow(e.id, e.reader.id, e.book.id, e.eventType, e.eventDatetime)
+            FROM EventEntity e""")
+    Stream<EventRow> streamAll();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            SELECT new com.poly.domains.dto.EventRow(e.id, e.reader.id, e.book.id, e.eventType, e.eventDatetime)
+            FROM EventEntity e
+            ORDER BY e.eventDatetime, e.id""")
+    Stream<EventRow> streamAllInTimeOrder();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            SELECT new com.poly.domains.dto.EventRow(e.id, e.reader.id, e.book.id, e.eventType, e.eventDatetime)
+            FROM EventEntity e
+            WHERE e.eventDatetime >= :from AND e.eventDatetime < :to
+            ORDER BY e.eventDatetime, e.id""")
+    Stream<EventRow> streamBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            SELECT new com.poly.domains.dto.EventRow(e.id, e.reader.id, e.book.id, e.eventType, e.eventDatetime)
+            FROM EventEntity e
+            WHERE e.eventDatetime < :before
+            ORDER BY e.eventDatetime, e.id""")
+    Stream<EventRow> streamBefore(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM EventEntity e WHERE e.eventDatetime < :before")
+    int deleteBefore(@Param("before") LocalDateTime before);
 }
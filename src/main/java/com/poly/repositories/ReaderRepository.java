@@ -1,9 +1,127 @@
 package com.poly.repositories;
 
+import com.poly.domains.dto.IdCount;
+import com.poly.domains.dto.ReaderDto;
+import com.poly.domains.dto.ReaderView;
 import com.poly.domains.entities.ReaderEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
 @Repository
 public interface ReaderRepository extends JpaRepository<ReaderEntity, Integer> {
+
+    @Query("SELECT new com.poly.domains.dto.ReaderDto(r.id, r.firstName, r.lastName) FROM ReaderEntity r")
+    List<ReaderDto> listAll();
+
+    @Query("SELECT new com.poly.domains.dto.ReaderDto(r.id, r.firstName, r.lastName) FROM ReaderEntity r WHERE r.id = :id")
+    Optional<ReaderDto> findDtoById(@Param("id") int id);
+
+    @Query("""
+            SELECT new com.poly.domains.dto.ReaderDto(r.id, r.firstName, r.lastName) FROM ReaderEntity r
+            WHERE r.id > :after ORDER BY r.id""")
+    List<ReaderDto> findPageAfter(@Param("after") int after, Pageable pageable);
+
+    @Query("SELECT r.id FROM ReaderEntity r WHERE r.id IN :ids")
+    Set<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Reader with the largest number of events of the given type in the open interval (start, end).
+     * Ties are broken by the lowest id; if nobody has such events, the reader with the lowest id is returned.
+     */
+    @Query(value = """
+            SELECT r.id AS id, r.first_name AS "firstName", r.last_name AS "lastName" FROM reader r
+            JOIN (
+                (SELECT e.id_reader AS id, COUNT(*) AS cnt FROM event e
+                 WHERE e.event_type = :eventType AND e.event_datetime > :start AND e.event_datetime < :end
+                 GROUP BY e.id_reader
+                 ORDER BY cnt DESC, e.id_reader ASC
+                 LIMIT 1)
+                UNION ALL
+                (SELECT id, 0 FROM reader ORDER BY id LIMIT 1)
+            ) top ON top.id = r.id
+            ORDER BY top.cnt DESC, r.id ASC
+            LIMIT 1""",
+            nativeQuery = true)
+    Optional<ReaderView> findMostReader(@Param("eventType") String eventType,
+                                        @Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end);
+
+    /**
+     * Same as the query above, but whole days [firstDay, lastDay) are read from reader_daily_activity
+     * and only the partial days at the edges of the interval from event.
+     */
+    @Query(value = """
+            SELECT r.id AS id, r.first_name AS "firstName", r.last_name AS "lastName" FROM reader r
+            JOIN (
+                (SELECT t.id_reader AS id, SUM(t.cnt) AS cnt FROM (
+                     SELECT a.id_reader, a.event_count AS cnt FROM reader_daily_activity a
+                     WHERE a.event_type = :eventType AND a.activity_date >= :firstDay AND a.activity_date < :lastDay
+                     UNION ALL
+                     SELECT e.id_reader, COUNT(*) AS cnt FROM event e
+                     WHERE e.event_type = :eventType AND (
+                           (e.event_datetime > :start AND e.event_datetime < CAST(:firstDay AS timestamp))
+                        OR (e.event_datetime >= CAST(:lastDay AS timestamp) AND e.event_datetime < :end))
+                     GROUP BY e.id_reader
+                 ) t
+                 GROUP BY t.id_reader
+                 ORDER BY cnt DESC, t.id_reader ASC
+                 LIMIT 1)
+                UNION ALL
+                (SELECT id, 0 FROM reader ORDER BY id LIMIT 1)
+            ) top ON top.id = r.id
+            ORDER BY top.cnt DESC, r.id ASC
+            LIMIT 1""",
+            nativeQuery = true)
+    Optional<ReaderView> findMostReader(@Param("eventType") String eventType,
+                                        @Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end,
+                                        @Param("firstDay") LocalDate firstDay,
+                                        @Param("lastDay") LocalDate lastDay);
+
+    /**
+     * Counts of events of the given type of all readers in the open interval (start, end),
+     * for merging with archived events.
+     */
+    @Query(value = """
+            SELECT e.id_reader AS id, COUNT(*) AS events FROM event e
+            WHERE e.id_reader IS NOT NULL AND e.event_type = :eventType
+              AND e.event_datetime > :start AND e.event_datetime < :end
+            GROUP BY e.id_reader""",
+            nativeQuery = true)
+    List<IdCount> countEvents(@Param("eventType") String eventType,
+                              @Param("start") LocalDateTime start,
+                              @Param("end") LocalDateTime end);
+
+    /**
+     * Same as the query above, with whole days [firstDay, lastDay) read from reader_daily_activity.
+     */
+    @Query(value = """
+            SELECT t.id_reader AS id, SUM(t.cnt) AS events FROM (
+                SELECT a.id_reader, a.event_count AS cnt FROM reader_daily_activity a
+                WHERE a.event_type = :eventType AND a.activity_date >= :firstDay AND a.activity_date < :lastDay
+                UNION ALL
+                SELECT e.id_reader, COUNT(*) AS cnt FROM event e
+                WHERE e.event_type = :eventType AND (
+                      (e.event_datetime > :start AND e.event_datetime < CAST(:firstDay AS timestamp))
+                   OR (e.event_datetime >= CAST(:lastDay AS timestamp) AND e.event_datetime < :end))
+                GROUP BY e.id_reader
+            ) t
+            WHERE t.id_reader IS NOT NULL
+            GROUP BY t.id_reader""",
+            nativeQuery = true)
+    List<IdCount> countEvents(@Param("eventType") String eventType,
+                              @Param("start") LocalDateTime start,
+                              @Param("end") LocalDateTime end,
+                              @Param("firstDay") LocalDate firstDay,
+                              @Param("lastDay") LocalDate lastDay);
 }
@@ -0,0 +1,141 @@
+package com.poly.services;
+
+import com.poly.analytics.EventArchive;
+import com.poly.domains.dto.EventRow;
+import com.poly.repositories.ActivityBatchRepository;
+import com.poly.repositories.BookActivityRepository;
+import com.poly.repositories.ReaderActivityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.poly.utils.EventType;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Daily counters of the events per book and per reader. They are kept for archived events too, so
+ * they must survive {@link EventArchiver}: an empty table is rebuilt from both the {@code event}
+ * table and the {@link EventArchive} before the application starts accepting requests.
+ */
+@Service
+public class ActivityRollupService implements SmartInitializingSingleton {
+
+    private final static Logger logger = LoggerFactory.getLogger(ActivityRollupService.class);
+
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+    private static final int ARCHIVE_BATCH_SIZE = 10_000;
+
+    private final BookActivityRepository bookActivityRepository;
+    private final ReaderActivityRepository readerActivityRepository;
+    private final ActivityBatchRepository activityBatchRepository;
+    private final EventArchive eventArchive;
+    private final TransactionTemplate transactionTemplate;
+
+    public ActivityRollupService(BookActivityRepository bookActivityRepository,
+                                 ReaderActivityRepository readerActivityRepository,
+                                 ActivityBatchRepository activityBatchRepository,
+                                 EventArchive eventArchive,
+                                 PlatformTransactionManager transactionManager) {
+        this.bookActivityRepository = bookActivityRepository;
+        this.readerActivityRepository = readerActivityRepository;
+        this.activityBatchRepository = activityBatchRepository;
+        this.eventArchive = eventArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Adds a batch of events to the daily counters with one upsert per distinct counter.
+     * Must run in the transaction that inserts the events.
+     */
+    public void recordAll(List<EventRow> events) {
+        SortedMap<ActivityBatchRepository.Key, Long> bookDeltas = new TreeMap<>();
+        SortedMap<ActivityBatchRepository.Key, Long> readerDeltas = new TreeMap<>();
+        for (EventRow event : events) {
+            bookDeltas.merge(new ActivityBatchRepository.Key(event.eventDatetime().toLocalDate(),
+                    event.idBook(),
+                    event.eventType()), 1L, Long::sum);
+            readerDeltas.merge(new ActivityBatchRepository.Key(event.eventDatetime().toLocalDate(),
+                    event.idReader(),
+                    event.eventType()), 1L, Long::sum);
+        }
+        activityBatchRepository.incrementBooks(bookDeltas);
+        activityBatchRepository.incrementReaders(readerDeltas);
+    }
+
+    /**
+     * Removes the counters of the days before {@code date}.
+     *
+     * @return the number of removed rows
+     */
+    public int deleteBefore(LocalDate date) {
+        return bookActivityRepository.deleteBefore(date) + readerActivityRepository.deleteBefore(date);
+    }
+
+    /**
+     * Runs after all beans are created and before the web server starts, so no request sees the empty counters.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        transactionTemplate.executeWithoutResult(status -> rebuildIfEmpty());
+    }
+
+    /**
+     * Fills the empty tables from the events in the database and in the archive. The tables are locked
+     * first, so events recorded meanwhile by other instances wait and are added to the rebuilt counters.
+     */
+    void rebuildIfEmpty() {
+        if (bookActivityRepository.count() > 0 && readerActivityRepository.count() > 0) return;
+        activityBatchRepository.lockTables();
+        boolean books = bookActivityRepository.count() == 0;
+        boolean readers = readerActivityRepository.count() == 0;
+        if (books) {
+            logger.info("Book daily activity rebuilt: {} rows", bookActivityRepository.rebuildFromEvents());
+        }
+        if (readers) {
+            logger.info("Reader daily activity rebuilt: {} rows", readerActivityRepository.rebuildFromEvents());
+        }
+        if ((books || readers) && eventArchive.isEnabled()) {
+            addArchivedEvents(books, readers);
+        }
+    }
+
+    /**
+     * Adds the archived events to the counters, flushing them every {@link #ARCHIVE_BATCH_SIZE} counters.
+     */
+    private void addArchivedEvents(boolean books, boolean readers) {
+        EventType[] types = EventType.values();
+        SortedMap<ActivityBatchRepository.Key, Long> bookDeltas = new TreeMap<>();
+        SortedMap<ActivityBatchRepository.Key, Long> readerDeltas = new TreeMap<>();
+        long[] archived = new long[1];
+        eventArchive.forEachEvent((micros, readerId, bookId, type) -> {
+            LocalDate activityDate = LocalDate.ofEpochDay(Math.floorDiv(micros, MICROS_PER_DAY));
+            String eventType = types[type].name();
+            if (books && bookId >= 0) {
+                bookDeltas.merge(new ActivityBatchRepository.Key(activityDate, bookId, eventType), 1L, Long::sum);
+            }
+            if (readers && readerId >= 0) {
+                readerDeltas.merge(new ActivityBatchRepository.Key(activityDate, readerId, eventType), 1L, Long::sum);
+            }
+            archived[0]++;
+            if (bookDeltas.size() + readerDeltas.size() >= ARCHIVE_BATCH_SIZE) {
+                flush(bookDeltas, readerDeltas);
+            }
+        });
+        flush(bookDeltas, readerDeltas);
+        logger.info("Daily activity rebuilt from the archive: {} events", archived[0]);
+    }
+
+    private void flush(SortedMap<ActivityBatchRepository.Key, Long> bookDeltas,
+                       SortedMap<ActivityBatchRepository.Key, Long> readerDeltas) {
+        activityBatchRepository.incrementBooks(bookDeltas);
+        activityBatchRepository.incrementReaders(readerDeltas);
+        bookDeltas.clear();
+        readerDeltas.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package com.poly.services;
+
+import com.poly.analytics.QueryDeadline;
+import com.poly.config.StatementCounter;
+import com.poly.exceptions.AnalyticsUnavailableException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs analytics queries on a small dedicated pool, so that they cannot take up all request threads
+ * and connections. Every task has a deadline counted from submission: the future fails with
+ * {@link AnalyticsUnavailableException} when the queue is full or the deadline passes. The task runs
+ * with its deadline bound by {@link QueryDeadline}, so the queries it sends to PostgreSQL after
+ * {@link QueryDeadline#limitStatements()} are cancelled by a statement timeout once the deadline passes.
+ */
+@Component
+public class AnalyticsExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final QueryDeadline queryDeadline;
+    private final Duration timeout;
+
+    public AnalyticsExecutor(@Value("${library-helper.analytics.threads}") int threads,
+                             @Value("${library-helper.analytics.queue-capacity}") int queueCapacity,
+                             @Value("${library-helper.analytics.timeout}") Duration timeout,
+                             QueryDeadline queryDeadline) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("analytics-"));
+        this.queryDeadline = queryDeadline;
+        this.timeout = timeout;
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(StatementCounter.propagate(() -> run(task, deadline, future)));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new AnalyticsUnavailableException("Analytics queue is full", e));
+            return future;
+        }
+        return future
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(e instanceof TimeoutException
+                        ? new AnalyticsUnavailableException("Analytics request timed out after " + timeout.toMillis() + " ms", e)
+                        : e));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> void run(Callable<T> task, long deadline, CompletableFuture<T> future) {
+        if (future.isDone()) return;
+        try {
+            if (deadline - System.nanoTime() <= 0) throw new QueryTimeoutException("Deadline passed in the queue");
+            future.complete(queryDeadline.call(deadline, task));
+        } catch (QueryTimeoutException e) {
+            future.completeExceptionally(new AnalyticsUnavailableException("Analytics query timed out", e));
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
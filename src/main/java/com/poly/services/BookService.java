@@ -1,53 +1,116 @@
 package com.poly.services;
 
+import com.poly.analytics.AggregationKernel;
+import com.poly.analytics.BookLeaderboard;
+import com.poly.analytics.EventArchive;
+import com.poly.analytics.IntLongHashMap;
+import com.poly.analytics.MappedEventStore;
+import com.poly.analytics.QueryDeadline;
 import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.BookView;
+import com.poly.domains.dto.IdCount;
+import com.poly.domains.dto.PageDto;
 import com.poly.domains.entities.BookEntity;
-import com.poly.domains.entities.EventEntity;
 import com.poly.exceptions.NotFoundException;
 import com.poly.repositories.BookRepository;
-import com.poly.repositories.EventRepository;
+import com.poly.utils.ApplicationConstants;
+import com.poly.utils.DayRange;
+import com.poly.utils.VersionedCollection;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+
+import static com.poly.utils.ApplicationConstants.BOOKS_CACHE;
+import static com.poly.utils.ApplicationConstants.BOOK_LIST_CACHE;
+import static com.poly.utils.ApplicationConstants.BOOK_PAGE_CACHE;
 
 @Service
+@Timed(value = ApplicationConstants.SERVICE_TIMER, histogram = true)
 public class BookService {
 
     private final static Logger logger = LoggerFactory.getLogger(BookService.class);
 
     private final BookRepository bookRepository;
-    private final EventRepository eventRepository;
+    private final BookLeaderboard bookLeaderboard;
+    private final EventArchive eventArchive;
+    private final MappedEventStore mappedEventStore;
+    private final CollectionVersions collectionVersions;
+    private final QueryDeadline queryDeadline;
 
-    public BookService(BookRepository bookRepository, EventRepository eventRepository) {
+    public BookService(BookRepository bookRepository,
+                       BookLeaderboard bookLeaderboard,
+                       EventArchive eventArchive,
+                       MappedEventStore mappedEventStore,
+                       CollectionVersions collectionVersions,
+                       QueryDeadline queryDeadline) {
         this.bookRepository = bookRepository;
-        this.eventRepository = eventRepository;
+        this.bookLeaderboard = bookLeaderboard;
+        this.eventArchive = eventArchive;
+        this.mappedEventStore = mappedEventStore;
+        this.collectionVersions = collectionVersions;
+        this.queryDeadline = queryDeadline;
     }
 
+    @Cacheable(cacheNames = BOOK_LIST_CACHE, key = "'all'")
+    @Transactional(readOnly = true)
     public List<BookDto> getBooks() {
-        List<BookEntity> books = bookRepository.findAll();
-        List<BookDto> booksDto = new ArrayList<>();
-        for (BookEntity book: books) {
-            booksDto.add(new BookDto(book.getId(), book.getName(), book.getAuthor()));
-        }
-        return booksDto;
+        return Collections.unmodifiableList(bookRepository.listAll());
+    }
+
+    /**
+     * Looks up a book for the checks of the accepted events; not exposed over HTTP.
+     */
+    @Cacheable(cacheNames = BOOKS_CACHE, key = "#id")
+    @Transactional(readOnly = true)
+    public BookDto getBook(int id) throws NotFoundException {
+        return bookRepository
+                .findDtoById(id)
+                .orElseThrow(() -> new NotFoundException("Book not found"));
     }
 
+    @Cacheable(cacheNames = BOOK_PAGE_CACHE, key = "#after + ':' + #limit")
+    @Transactional(readOnly = true)
+    public PageDto<BookDto> getBooks(int after, int limit) {
+        List<BookDto> books = bookRepository.findPageAfter(after, PageRequest.of(0, limit + 1));
+        if (books.size() <= limit) return new PageDto<>(Collections.unmodifiableList(books), null);
+        List<BookDto> page = books.subList(0, limit);
+        return new PageDto<>(Collections.unmodifiableList(page), String.valueOf(page.get(limit - 1).id()));
+    }
+
+    @Caching(put = @CachePut(cacheNames = BOOKS_CACHE, key = "#result.id()"),
+            evict = @CacheEvict(cacheNames = {BOOK_LIST_CACHE, BOOK_PAGE_CACHE}, allEntries = true))
+    @Transactional
     public BookDto createBook(BookDto bookDto) {
         BookEntity book = new BookEntity();
         book.setName(bookDto.name());
         book.setAuthor(bookDto.author());
         BookEntity bookEntity = bookRepository.save(book);
+        bookLeaderboard.updateAuthor(bookEntity.getId(), bookEntity.getAuthor());
+        collectionVersions.bump(VersionedCollection.BOOKS);
         BookDto newBook = new BookDto(bookEntity.getId(), bookEntity.getName(), bookEntity.getAuthor());
         logger.info("Book created: {}", newBook);
         return newBook;
     }
 
+    @Caching(put = @CachePut(cacheNames = BOOKS_CACHE, key = "#result.id()"),
+            evict = @CacheEvict(cacheNames = {BOOK_LIST_CACHE, BOOK_PAGE_CACHE}, allEntries = true))
+    @Transactional
     public BookDto updateBook(BookDto bookDto) throws NotFoundException {
         BookEntity book = bookRepository
                 .findById(bookDto.id())
@@ -55,25 +118,94 @@ public class BookService {
         book.setName(bookDto.name());
         book.setAuthor(bookDto.author());
         BookEntity bookEntity = bookRepository.save(book);
+        bookLeaderboard.updateAuthor(bookEntity.getId(), bookEntity.getAuthor());
+        collectionVersions.bump(VersionedCollection.BOOKS);
         logger.info("Book updated: {}", bookDto);
         return new BookDto(bookEntity.getId(), bookEntity.getName(), bookEntity.getAuthor());
     }
 
+    @Transactional(readOnly = true)
     public BookDto getMostPopularBook(String startInterval, String endInterval) throws NotFoundException {
-        List<EventEntity> events = eventRepository.findAll();
+        List<BookDto> books = getMostPopularBooks(startInterval, endInterval, 1);
+        if (books.isEmpty()) throw new NotFoundException("Most popular book not found");
+        return books.get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<BookDto> getMostPopularBooks(String startInterval, String endInterval, int limit) {
         LocalDateTime startDateTime = LocalDateTime.parse(startInterval);
         LocalDateTime endDateTime = LocalDateTime.parse(endInterval);
-        BookEntity book = events.stream()
-                .filter(eventEntity -> eventEntity.getEventDatetime().isAfter(startDateTime) &&
-                        eventEntity.getEventDatetime().isBefore(endDateTime))
-                .collect(Collectors.groupingBy(EventEntity::getBook, Collectors.counting()))
-                .entrySet().stream()
-                .max((entry1, entry2) -> {
-                    int difference = (int) (entry1.getValue() - entry2.getValue());
-                    return difference != 0 ? difference : -entry1.getKey().getAuthor().compareTo(entry2.getKey().getAuthor());
-                })
-                .map(Map.Entry::getKey)
-                .orElseThrow(() -> new NotFoundException("Most popular book not found"));
-        return new BookDto(book.getId(), book.getName(), book.getAuthor());
+        List<BookDto> books;
+        if (bookLeaderboard.isReady()) {
+            books = findBooksInOrder(bookLeaderboard.mostPopularBooks(startDateTime, endDateTime, limit));
+        } else if (mappedEventStore.isReady()) {
+            IntLongHashMap counts = AggregationKernel.threadCounts();
+            mappedEventStore.countBooks(startDateTime, endDateTime, counts);
+            books = rankBooks(counts, limit);
+        } else {
+            queryDeadline.limitStatements();
+            DayRange fullDays = DayRange.within(startDateTime, endDateTime);
+            IntLongHashMap archived = AggregationKernel.threadCounts();
+            if (eventArchive.countBooks(startDateTime, endDateTime, fullDays, archived) > 0) {
+                books = findMostPopularBooks(startDateTime, endDateTime, fullDays, archived, limit);
+            } else {
+                List<BookView> views = fullDays.isEmpty()
+                        ? bookRepository.findMostPopularBooks(startDateTime, endDateTime, limit)
+                        : bookRepository.findMostPopularBooks(startDateTime, endDateTime, fullDays.first(), fullDays.last(), limit);
+                books = new ArrayList<>(views.size());
+                for (BookView view : views) {
+                    books.add(new BookDto(view.getId(), view.getName(), view.getAuthor()));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Adds the counts of the live events to the archived ones and orders the books the same way
+     * as {@link BookRepository#findMostPopularBooks}.
+     */
+    private List<BookDto> findMostPopularBooks(LocalDateTime start, LocalDateTime end, DayRange fullDays,
+                                               IntLongHashMap counts, int limit) {
+        List<IdCount> liveCounts = fullDays.isEmpty()
+                ? bookRepository.countEvents(start, end)
+                : bookRepository.countEvents(start, end, fullDays.first(), fullDays.last());
+        for (IdCount count : liveCounts) {
+            counts.add(count.getId(), count.getEvents());
+        }
+        return rankBooks(counts, limit);
+    }
+
+    /**
+     * Orders the counted books the same way as {@link BookRepository#findMostPopularBooks}.
+     * Only the books with at least the count of the last place are loaded to break ties by author.
+     */
+    private List<BookDto> rankBooks(IntLongHashMap counts, int limit) {
+        long[] topCounts = new long[Math.min(limit, counts.size())];
+        int size = AggregationKernel.topK(counts, AggregationKernel.BY_ID, new int[topCounts.length], topCounts);
+        if (size == 0) return List.of();
+        long lastPlaceCount = topCounts[size - 1];
+        List<Integer> ids = new ArrayList<>();
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            if (counts.isUsed(slot) && counts.valueAt(slot) >= lastPlaceCount) ids.add(counts.keyAt(slot));
+        }
+        List<BookDto> books = new ArrayList<>(bookRepository.findAllDtoById(ids));
+        books.sort(Comparator.comparingLong((BookDto book) -> counts.get(book.id())).reversed()
+                .thenComparing(BookDto::author, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(BookDto::id));
+        return books.subList(0, Math.min(limit, books.size()));
+    }
+
+    private List<BookDto> findBooksInOrder(int[] ids) {
+        Map<Integer, BookDto> books = new HashMap<>();
+        for (BookDto book : bookRepository.findAllDtoById(Arrays.stream(ids).boxed().toList())) {
+            books.put(book.id(), book);
+        }
+        List<BookDto> booksInOrder = new ArrayList<>();
+        for (int id : ids) {
+            BookDto book = books.get(id);
+            if (book != null) booksInOrder.add(book);
+        }
+        return booksInOrder;
     }
 }
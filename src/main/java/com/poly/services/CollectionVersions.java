@@ -0,0 +1,75 @@
+package com.poly.services;
+
+import com.poly.utils.TransactionUtils;
+import com.poly.utils.VersionedCollection;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Version counters of the collections, bumped after every committed change. Used to build ETags,
+ * so that unchanged responses are answered with 304 without querying the database.
+ * <p>
+ * The counters start over on restart, so the ETags also contain the startup time.
+ * Each instance keeps its own counters.
+ */
+@Component
+public class CollectionVersions {
+
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<VersionedCollection, AtomicReference<Version>> versions = new EnumMap<>(VersionedCollection.class);
+
+    public CollectionVersions() {
+        for (VersionedCollection collection : VersionedCollection.values()) {
+            versions.put(collection, new AtomicReference<>(new Version(0, startedAt)));
+        }
+    }
+
+    /**
+     * Bumps the version once the surrounding transaction, if any, commits.
+     * Must be called after the change is written, never before.
+     */
+    public void bump(VersionedCollection collection) {
+        TransactionUtils.afterCommit(() -> versions.get(collection)
+                .updateAndGet(version -> new Version(version.counter() + 1, System.currentTimeMillis())));
+    }
+
+    /**
+     * Checks the request's If-None-Match and If-Modified-Since against the given collections and sets
+     * the ETag and Last-Modified headers. Must be called before the response data is queried,
+     * so that a change committed meanwhile is never hidden behind an old ETag.
+     *
+     * @return true if the response is not modified and the 304 status is already set
+     */
+    public boolean checkNotModified(WebRequest request, VersionedCollection... collections) {
+        return request.checkNotModified(etag(collections), lastModified(collections));
+    }
+
+    String etag(VersionedCollection... collections) {
+        StringBuilder etag = new StringBuilder("\"").append(Long.toHexString(startedAt));
+        for (VersionedCollection collection : collections) {
+            etag.append('-').append(versions.get(collection).get().counter());
+        }
+        return etag.append('"').toString();
+    }
+
+    /**
+     * Last modification time rounded up to the next whole second, or -1 while that second is not over yet.
+     * HTTP dates have no milliseconds, so an earlier date would hide a change made later in the same second
+     * from If-Modified-Since; until then only the ETag is used.
+     */
+    long lastModified(VersionedCollection... collections) {
+        long modifiedAt = startedAt;
+        for (VersionedCollection collection : collections) {
+            modifiedAt = Math.max(modifiedAt, versions.get(collection).get().modifiedAt());
+        }
+        long lastModified = (Math.floorDiv(modifiedAt, 1000) + 1) * 1000;
+        return lastModified <= System.currentTimeMillis() ? lastModified : -1;
+    }
+
+    private record Version(long counter, long modifiedAt) {
+    }
+}
@@ -0,0 +1,106 @@
+package com.poly.services;
+
+import com.poly.analytics.EventArchive;
+import com.poly.domains.dto.EventRow;
+import com.poly.repositories.EventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Moves events older than the horizon from the {@code event} table into the {@link EventArchive}.
+ * <p>
+ * The events are read and deleted in one repeatable read transaction, so events inserted meanwhile
+ * are neither archived nor deleted. The segments get their final names right before the commit, are
+ * counted only once it succeeds and removed again if it fails; only a crash between the two can leave
+ * events both in the archive and in the table. Moves wait for the loaders holding {@link EventArchive#loadLock()}.
+ */
+@Service
+public class EventArchiver {
+
+    private final static Logger logger = LoggerFactory.getLogger(EventArchiver.class);
+
+    private final EventArchive eventArchive;
+    private final EventRepository eventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int horizonDays;
+    private final int segmentSize;
+
+    public EventArchiver(EventArchive eventArchive,
+                         EventRepository eventRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${library-helper.archive.horizon-days}") int horizonDays,
+                         @Value("${library-helper.archive.segment-size}") int segmentSize) {
+        this.eventArchive = eventArchive;
+        this.eventRepository = eventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.horizonDays = horizonDays;
+        this.segmentSize = segmentSize;
+    }
+
+    @Scheduled(cron = "${library-helper.archive.cron}")
+    public void archive() {
+        if (!eventArchive.isEnabled()) return;
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime before = LocalDate.now().minusDays(horizonDays).atStartOfDay();
+        EventArchive.Writer writer = eventArchive.writer(segmentSize);
+        int archived;
+        eventArchive.moveLock().lock();
+        try {
+            archived = transactionTemplate.execute(status -> {
+                int written = write(before, writer);
+                if (written == 0) return 0;
+                int deleted = eventRepository.deleteBefore(before);
+                if (deleted != written) {
+                    throw new IllegalStateException("Archived " + written + " events, but deleted " + deleted);
+                }
+                publish(writer);
+                return written;
+            });
+        } catch (RuntimeException e) {
+            writer.discard();
+            logger.error("Failed to archive events before {}", before, e);
+            return;
+        } finally {
+            eventArchive.moveLock().unlock();
+        }
+        logger.info("Events archived in {} ms: {} events before {} in {} segments",
+                System.currentTimeMillis() - startedAt, archived, before, writer.segments());
+    }
+
+    private int write(LocalDateTime before, EventArchive.Writer writer) {
+        int written = 0;
+        try (Stream<EventRow> events = eventRepository.streamBefore(before)) {
+            Iterator<EventRow> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                writer.add(iterator.next());
+                written++;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return written;
+    }
+
+    private static void publish(EventArchive.Writer writer) {
+        try {
+            writer.publish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.poly.services;
+
+import com.poly.domains.dto.EventBatchItemDto;
+import com.poly.domains.dto.EventDto;
+import com.poly.exceptions.NotFoundException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind ingestion of events: accepted events wait in a bounded queue, and a single writer
+ * thread stores them in group commits through {@link EventService#createEvents(List)}.
+ * When the queue is full new events are rejected instead of waiting. On shutdown the queue
+ * is drained before the application context is closed, for at most the shutdown timeout.
+ * <p>
+ * A failed batch is retried with a doubling delay. While the database cannot be reached the writer keeps
+ * retrying; any other failure is retried {@code max-attempts} times, after which the batch is split in
+ * halves and written again, so that only the events that still fail on their own are dropped and logged.
+ * <p>
+ * Enabled with {@code library-helper.ingestion.write-behind.enabled}.
+ */
+@Component
+public class EventIngestionQueue {
+
+    private final static Logger logger = LoggerFactory.getLogger(EventIngestionQueue.class);
+
+    private final static long POLL_TIMEOUT_MILLIS = 100;
+    private final static long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final Duration shutdownTimeout;
+    private final EventService eventService;
+    private final EventPartitionService eventPartitionService;
+    private final BlockingQueue<EventDto> queue;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Thread writer = new Thread(this::writeLoop, "event-writer");
+    private volatile boolean running;
+    private volatile int pending;
+
+    public EventIngestionQueue(@Value("${library-helper.ingestion.write-behind.enabled}") boolean enabled,
+                               @Value("${library-helper.ingestion.write-behind.capacity}") int capacity,
+                               @Value("${library-helper.ingestion.write-behind.max-batch-size}") int maxBatchSize,
+                               @Value("${library-helper.ingestion.write-behind.max-attempts}") int maxAttempts,
+                               @Value("${library-helper.ingestion.write-behind.retry-delay}") Duration retryDelay,
+                               @Value("${library-helper.ingestion.write-behind.shutdown-timeout}") Duration shutdownTimeout,
+                               EventService eventService,
+                               EventPartitionService eventPartitionService) {
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelay.toMillis();
+        this.shutdownTimeout = shutdownTimeout;
+        this.eventService = eventService;
+        this.eventPartitionService = eventPartitionService;
+        this.queue = new ArrayBlockingQueue<>(enabled ? capacity : 1);
+        writer.setDaemon(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Validates the event and queues it for writing.
+     *
+     * @return the accepted event, or null if the queue is full or shutting down
+     */
+    public EventDto submit(EventDto eventDto) throws NotFoundException {
+        EventDto event = eventService.validateEvent(eventDto);
+        lock.readLock().lock();
+        try {
+            return running && queue.offer(event) ? event : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            logger.error("Event writer did not drain the queue in {}, {} events are not written",
+                    shutdownTimeout, queue.size() + pending);
+            writer.interrupt();
+            return;
+        }
+        logger.info("Event writer stopped, queue drained");
+    }
+
+    private void writeLoop() {
+        List<EventDto> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EventDto first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                pending = batch.size();
+                write(batch, maxAttempts);
+                pending = 0;
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the batch, and if it still fails after {@code attempts} tries, each of its halves with a single try.
+     */
+    private void write(List<EventDto> batch, int attempts) throws InterruptedException {
+        long delay = retryDelayMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                eventPartitionService.ensurePartitions(batch);
+                List<EventBatchItemDto> results = eventService.createEvents(batch);
+                for (EventBatchItemDto result : results) {
+                    if (result.error() != null) {
+                        logger.warn("Queued event dropped: {}: {}", batch.get(result.index()), result.error());
+                    }
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= attempts && !isUnavailable(e)) {
+                    if (batch.size() == 1) {
+                        logger.error("Queued event dropped after {} attempts: {}", attempt, batch.get(0), e);
+                        return;
+                    }
+                    logger.warn("Failed to write {} queued events, writing them in halves", batch.size(), e);
+                    write(batch.subList(0, batch.size() / 2), 1);
+                    write(batch.subList(batch.size() / 2, batch.size()), 1);
+                    return;
+                }
+                logger.error("Failed to write {} queued events, retrying in {} ms", batch.size(), delay, e);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Whether the failure is the database being out of reach, which no split of the batch would help.
+     */
+    private static boolean isUnavailable(RuntimeException e) {
+        return e instanceof CannotCreateTransactionException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException;
+    }
+}
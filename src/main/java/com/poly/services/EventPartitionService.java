@@ -0,0 +1,190 @@
+package com.poly.services;
+
+import com.poly.analytics.BookLeaderboard;
+import com.poly.analytics.EventArchive;
+import com.poly.analytics.MappedEventStore;
+import com.poly.domains.dto.EventDto;
+import com.poly.exceptions.UnsupportedArgumentException;
+import com.poly.repositories.EventPartitionRepository;
+import com.poly.utils.VersionedCollection;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@code event} table range-partitioned by month of {@code event_datetime}, so that interval
+ * queries only scan the partitions of the interval. On startup a plain table is converted once.
+ * Partitions are created ahead of time by a scheduled task and on demand for events of other months;
+ * with a retention period, partitions of older months are detached and events for them are rejected.
+ * The detached months are also removed from the daily activity and left out of the in-memory analytics
+ * and the archive, so every source counts the same events.
+ * <p>
+ * Enabled with {@code library-helper.event-partitioning.enabled}.
+ */
+@Service
+public class EventPartitionService {
+
+    private final static Logger logger = LoggerFactory.getLogger(EventPartitionService.class);
+
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final EventPartitionRepository eventPartitionRepository;
+    private final ActivityRollupService activityRollupService;
+    private final BookLeaderboard bookLeaderboard;
+    private final MappedEventStore mappedEventStore;
+    private final EventArchive eventArchive;
+    private final CollectionVersions collectionVersions;
+    private final TransactionTemplate transactionTemplate;
+    private volatile Set<YearMonth> partitions = ConcurrentHashMap.newKeySet();
+
+    public EventPartitionService(@Value("${library-helper.event-partitioning.enabled}") boolean enabled,
+                                 @Value("${library-helper.event-partitioning.months-ahead}") int monthsAhead,
+                                 @Value("${library-helper.event-partitioning.retention-months}") int retentionMonths,
+                                 EventPartitionRepository eventPartitionRepository,
+                                 ActivityRollupService activityRollupService,
+                                 BookLeaderboard bookLeaderboard,
+                                 MappedEventStore mappedEventStore,
+                                 EventArchive eventArchive,
+                                 CollectionVersions collectionVersions,
+                                 PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.eventPartitionRepository = eventPartitionRepository;
+        this.activityRollupService = activityRollupService;
+        this.bookLeaderboard = bookLeaderboard;
+        this.mappedEventStore = mappedEventStore;
+        this.eventArchive = eventArchive;
+        this.collectionVersions = collectionVersions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!eventPartitionRepository.isPartitioned()) {
+                partitionTable();
+            }
+        });
+        maintain();
+    }
+
+    private void partitionTable() {
+        long startedAt = System.currentTimeMillis();
+        YearMonth current = YearMonth.now();
+        YearMonth first = eventPartitionRepository.findFirstEventDatetime().map(YearMonth::from).orElse(current);
+        YearMonth last = eventPartitionRepository.findLastEventDatetime().map(YearMonth::from).orElse(current);
+        eventPartitionRepository.createPartitionedTable();
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            eventPartitionRepository.createPartition(month);
+        }
+        int moved = eventPartitionRepository.moveUnpartitionedRows();
+        logger.info("Event table partitioned by month in {} ms: {} events from {} to {}",
+                System.currentTimeMillis() - startedAt, moved, first, last);
+    }
+
+    /**
+     * Creates the partitions of the coming months and detaches the ones past the retention period.
+     */
+    @Scheduled(cron = "${library-helper.event-partitioning.maintenance-cron}")
+    public void maintain() {
+        if (!enabled) return;
+        YearMonth current = YearMonth.now();
+        for (YearMonth month = current; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            eventPartitionRepository.createPartition(month);
+        }
+        if (retentionMonths > 0) {
+            YearMonth horizon = retentionHorizon();
+            transactionTemplate.executeWithoutResult(status -> detachBefore(horizon));
+        }
+        Set<YearMonth> existing = ConcurrentHashMap.newKeySet();
+        existing.addAll(eventPartitionRepository.findPartitionMonths());
+        partitions = existing;
+    }
+
+    /**
+     * Detaches the partitions of the months before the horizon and removes these months from the daily
+     * activity, the in-memory analytics and the archive counts. Must run in a transaction: the analytics
+     * forget the months before the new version of the events is published after the commit.
+     */
+    private void detachBefore(YearMonth horizon) {
+        List<YearMonth> detached = new ArrayList<>();
+        for (YearMonth month : eventPartitionRepository.findPartitionMonths()) {
+            if (!month.isBefore(horizon)) break;
+            eventPartitionRepository.detachPartition(month);
+            detached.add(month);
+        }
+        int activityRows = activityRollupService.deleteBefore(horizon.atDay(1));
+        LocalDateTime start = horizon.atDay(1).atStartOfDay();
+        bookLeaderboard.retainFrom(start);
+        mappedEventStore.retainFrom(start);
+        eventArchive.retainFrom(start);
+        if (!detached.isEmpty() || activityRows > 0) {
+            collectionVersions.bump(VersionedCollection.EVENTS);
+            logger.info("Events before {} removed: partitions detached {}, daily activity rows deleted {}",
+                    horizon, detached, activityRows);
+        }
+    }
+
+    /**
+     * Creates the missing partitions for the events that are to be inserted. Events with a datetime that
+     * is missing, invalid or outside the retention period are skipped, the insert rejects them.
+     * <p>
+     * It must be called before the transaction of the insert: the partitions are created in a short
+     * transaction of their own, so that the lock on the parent table taken by the DDL is not held until
+     * the insert commits, and a caller inside a transaction would hold two connections at once.
+     */
+    public void ensurePartitions(List<EventDto> events) {
+        if (!enabled) return;
+        Set<YearMonth> missing = new TreeSet<>();
+        YearMonth horizon = retentionMonths > 0 ? retentionHorizon() : null;
+        for (EventDto event : events) {
+            if (event == null || event.eventDatetime() == null) continue;
+            YearMonth month;
+            try {
+                month = YearMonth.from(LocalDateTime.parse(event.eventDatetime()));
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (horizon != null && month.isBefore(horizon)) continue;
+            if (!partitions.contains(month)) missing.add(month);
+        }
+        if (missing.isEmpty()) return;
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            logger.warn("Event partitions {} created inside a transaction, it holds a second connection", missing);
+        }
+        transactionTemplate.executeWithoutResult(status -> missing.forEach(eventPartitionRepository::createPartition));
+        partitions.addAll(missing);
+        logger.info("Event partitions created on demand: {}", missing);
+    }
+
+    public void checkRetained(LocalDateTime eventDatetime) {
+        if (!enabled || retentionMonths <= 0) return;
+        if (YearMonth.from(eventDatetime).isBefore(retentionHorizon())) {
+            throw new UnsupportedArgumentException("Event datetime is outside the retention period: " + eventDatetime);
+        }
+    }
+
+    private YearMonth retentionHorizon() {
+        return YearMonth.now().minusMonths(retentionMonths - 1);
+    }
+}
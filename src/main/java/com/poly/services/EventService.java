@@ -1,65 +1,312 @@
 package com.poly.services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.poly.analytics.BookLeaderboard;
+import com.poly.analytics.EventArchive;
+import com.poly.analytics.MappedEventStore;
+import com.poly.domains.dto.EventBatchItemDto;
 import com.poly.domains.dto.EventDto;
+import com.poly.domains.dto.EventRow;
 import com.poly.domains.dto.EventTypeDto;
-import com.poly.domains.entities.BookEntity;
 import com.poly.domains.entities.EventEntity;
-import com.poly.domains.entities.ReaderEntity;
 import com.poly.exceptions.NotFoundException;
 import com.poly.exceptions.UnsupportedArgumentException;
 import com.poly.repositories.BookRepository;
 import com.poly.repositories.EventRepository;
 import com.poly.repositories.ReaderRepository;
+import com.poly.utils.ApplicationConstants;
 import com.poly.utils.EventType;
+import com.poly.utils.VersionedCollection;
+import io.micrometer.core.annotation.Timed;
+import org.postgresql.util.PSQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
 
 @Service
+@Timed(value = ApplicationConstants.SERVICE_TIMER, histogram = true)
 public class EventService {
 
     private final static Logger logger = LoggerFactory.getLogger(EventService.class);
 
+    private final static int EXPORT_FLUSH_INTERVAL = 1000;
+
     private final EventRepository eventRepository;
     private final ReaderRepository readerRepository;
     private final BookRepository bookRepository;
+    private final ReaderService readerService;
+    private final BookService bookService;
+    private final EventPartitionService eventPartitionService;
+    private final ActivityRollupService activityRollupService;
+    private final BookLeaderboard bookLeaderboard;
+    private final MappedEventStore mappedEventStore;
+    private final EventArchive eventArchive;
+    private final CollectionVersions collectionVersions;
+    private final ObjectMapper objectMapper;
 
     public EventService(EventRepository eventRepository,
                         ReaderRepository readerRepository,
-                        BookRepository bookRepository) {
+                        BookRepository bookRepository,
+                        ReaderService readerService,
+                        BookService bookService,
+                        EventPartitionService eventPartitionService,
+                        ActivityRollupService activityRollupService,
+                        BookLeaderboard bookLeaderboard,
+                        MappedEventStore mappedEventStore,
+                        EventArchive eventArchive,
+                        CollectionVersions collectionVersions,
+                        ObjectMapper objectMapper) {
         this.eventRepository = eventRepository;
         this.readerRepository = readerRepository;
         this.bookRepository = bookRepository;
+        this.readerService = readerService;
+        this.bookService = bookService;
+        this.eventPartitionService = eventPartitionService;
+        this.activityRollupService = activityRollupService;
+        this.bookLeaderboard = bookLeaderboard;
+        this.mappedEventStore = mappedEventStore;
+        this.eventArchive = eventArchive;
+        this.collectionVersions = collectionVersions;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Inserts the event and updates the daily activity counters in one statement, without loading
+     * the reader and the book: a missing one is detected by the foreign key violation. With event
+     * partitioning the partition must exist, see {@link EventPartitionService#ensurePartitions}.
+     */
+    @Transactional(rollbackFor = NotFoundException.class)
     public EventDto createEvent(EventDto eventDto) throws NotFoundException {
-        ReaderEntity reader = readerRepository
-                .findById(eventDto.idReader())
-                .orElseThrow(() -> new NotFoundException("Reader not found"));
-        BookEntity book = bookRepository
-                .findById(eventDto.idBook())
-                .orElseThrow(() -> new NotFoundException("Book not found"));
-        EventEntity event = new EventEntity();
-        event.setReader(reader);
-        event.setBook(book);
-        event.setEventType(validateEventType(eventDto.eventType()).name());
-        event.setEventDatetime(LocalDateTime.parse(eventDto.eventDatetime()));
-        EventEntity eventEntity = eventRepository.save(event);
-        EventDto newEvent = new EventDto(eventEntity.getId(),
-                eventEntity.getBook().getId(),
-                eventEntity.getReader().getId(),
-                eventEntity.getEventType(),
-                eventEntity.getEventDatetime().format(DATE_FORMATTER));
+        if (eventDto.idReader() == null) {
+            throw new NotFoundException("Reader not found");
+        }
+        if (eventDto.idBook() == null) {
+            throw new NotFoundException("Book not found");
+        }
+        String eventType = validateEventType(eventDto.eventType()).name();
+        LocalDateTime eventDatetime = LocalDateTime.parse(eventDto.eventDatetime());
+        eventPartitionService.checkRetained(eventDatetime);
+        int id;
+        try {
+            id = eventRepository.insertCounted(eventDto.idReader(), eventDto.idBook(), eventType, eventDatetime);
+        } catch (DataIntegrityViolationException e) {
+            Optional<NotFoundException> notFound = toNotFoundException(e);
+            if (notFound.isPresent()) throw notFound.get();
+            throw e;
+        }
+        bookLeaderboard.record(id, eventDto.idBook(), eventDatetime);
+        mappedEventStore.recordAll(List.of(new EventRow(id,
+                eventDto.idReader(),
+                eventDto.idBook(),
+                eventType,
+                eventDatetime)));
+        collectionVersions.bump(VersionedCollection.EVENTS);
+        EventDto newEvent = new EventDto(id,
+                eventDto.idReader(),
+                eventDto.idBook(),
+                eventType,
+                eventDatetime.format(DATE_FORMATTER));
         logger.info("Event created: {}", newEvent);
         return newEvent;
     }
 
+    /**
+     * The missing reader or book behind a foreign key violation, empty for any other violation.
+     */
+    private static Optional<NotFoundException> toNotFoundException(DataIntegrityViolationException e) {
+        String detail = e.getMostSpecificCause() instanceof PSQLException psqlException
+                && psqlException.getServerErrorMessage() != null
+                ? psqlException.getServerErrorMessage().getDetail()
+                : e.getMostSpecificCause().getMessage();
+        if (detail != null && detail.contains("(id_reader)")) {
+            return Optional.of(new NotFoundException("Reader not found"));
+        }
+        if (detail != null && detail.contains("(id_book)")) {
+            return Optional.of(new NotFoundException("Book not found"));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks an event before it is accepted for write-behind ingestion and returns it normalized.
+     * Readers and books are looked up through the catalog cache, so accepting an event usually
+     * does not touch the database.
+     */
+    public EventDto validateEvent(EventDto eventDto) throws NotFoundException {
+        if (eventDto.idReader() == null) {
+            throw new NotFoundException("Reader not found");
+        }
+        if (eventDto.idBook() == null) {
+            throw new NotFoundException("Book not found");
+        }
+        EventType eventType = validateEventType(eventDto.eventType());
+        LocalDateTime eventDatetime = LocalDateTime.parse(eventDto.eventDatetime());
+        eventPartitionService.checkRetained(eventDatetime);
+        readerService.getReader(eventDto.idReader());
+        bookService.getBook(eventDto.idBook());
+        return new EventDto(null,
+                eventDto.idReader(),
+                eventDto.idBook(),
+                eventType.name(),
+                eventDatetime.format(DATE_FORMATTER));
+    }
+
+    /**
+     * Creates a batch of events in one transaction. Reader and book ids are checked with one query per type,
+     * the inserts go out as JDBC batches. Invalid items are skipped and reported by their index in the result,
+     * the valid ones are created. With event partitioning the partitions must exist, see
+     * {@link EventPartitionService#ensurePartitions}.
+     */
+    @Transactional
+    public List<EventBatchItemDto> createEvents(List<EventDto> eventDtos) {
+        Set<Integer> readerIds = new HashSet<>();
+        Set<Integer> bookIds = new HashSet<>();
+        for (EventDto eventDto : eventDtos) {
+            if (eventDto == null) continue;
+            if (eventDto.idReader() != null) readerIds.add(eventDto.idReader());
+            if (eventDto.idBook() != null) bookIds.add(eventDto.idBook());
+        }
+        Set<Integer> existingReaders = readerIds.isEmpty() ? Set.of() : readerRepository.findExistingIds(readerIds);
+        Set<Integer> existingBooks = bookIds.isEmpty() ? Set.of() : bookRepository.findExistingIds(bookIds);
+
+        EventBatchItemDto[] results = new EventBatchItemDto[eventDtos.size()];
+        List<Integer> indexes = new ArrayList<>(eventDtos.size());
+        List<EventEntity> events = new ArrayList<>(eventDtos.size());
+        for (int i = 0; i < eventDtos.size(); i++) {
+            EventDto eventDto = eventDtos.get(i);
+            String error = validateBatchItem(eventDto, existingReaders, existingBooks);
+            if (error != null) {
+                results[i] = new EventBatchItemDto(i, null, error);
+                continue;
+            }
+            EventEntity event = new EventEntity();
+            event.setReader(readerRepository.getReferenceById(eventDto.idReader()));
+            event.setBook(bookRepository.getReferenceById(eventDto.idBook()));
+            event.setEventType(eventDto.eventType());
+            event.setEventDatetime(LocalDateTime.parse(eventDto.eventDatetime()));
+            indexes.add(i);
+            events.add(event);
+        }
+        eventRepository.saveAll(events);
+        eventRepository.flush();
+
+        List<EventRow> rows = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            EventEntity event = events.get(i);
+            EventRow row = new EventRow(event.getId(),
+                    eventDtos.get(indexes.get(i)).idReader(),
+                    eventDtos.get(indexes.get(i)).idBook(),
+                    event.getEventType(),
+                    event.getEventDatetime());
+            rows.add(row);
+            results[indexes.get(i)] = new EventBatchItemDto(indexes.get(i), new EventDto(row.id(),
+                    row.idReader(),
+                    row.idBook(),
+                    row.eventType(),
+                    row.eventDatetime().format(DATE_FORMATTER)), null);
+        }
+        if (!rows.isEmpty()) {
+            activityRollupService.recordAll(rows);
+            bookLeaderboard.recordAll(rows);
+            mappedEventStore.recordAll(rows);
+            collectionVersions.bump(VersionedCollection.EVENTS);
+        }
+        logger.info("Events created in batch: {} of {}", rows.size(), eventDtos.size());
+        return Arrays.asList(results);
+    }
+
+    private String validateBatchItem(EventDto eventDto, Set<Integer> existingReaders, Set<Integer> existingBooks) {
+        if (eventDto == null) {
+            return "Event is missing";
+        }
+        if (eventDto.idReader() == null || !existingReaders.contains(eventDto.idReader())) {
+            return "Reader not found";
+        }
+        if (eventDto.idBook() == null || !existingBooks.contains(eventDto.idBook())) {
+            return "Book not found";
+        }
+        try {
+            validateEventType(String.valueOf(eventDto.eventType()));
+        } catch (UnsupportedArgumentException e) {
+            return e.getMessage();
+        }
+        if (eventDto.eventDatetime() == null) {
+            return "Invalid event datetime: null";
+        }
+        try {
+            eventPartitionService.checkRetained(LocalDateTime.parse(eventDto.eventDatetime()));
+        } catch (DateTimeParseException e) {
+            return "Invalid event datetime: " + eventDto.eventDatetime();
+        } catch (UnsupportedArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * Writes events with {@code from <= eventDatetime < to} as newline-delimited JSON, in time order.
+     * Rows are read through a server-side cursor and written one by one, so memory use does not depend
+     * on the number of exported events. Archived events of the range are merged in by time, without ids;
+     * the archive segments they come from are held in memory.
+     */
+    @Transactional(readOnly = true)
+    public long exportEvents(LocalDateTime from, LocalDateTime to, OutputStream outputStream) throws IOException {
+        long exported = 0;
+        try (Stream<EventRow> events = eventRepository.streamBetween(from, to);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            ObjectWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("");
+            Iterator<EventRow> live = events.iterator();
+            Iterator<EventRow> archived = eventArchive.events(from, to);
+            EventRow nextLive = live.hasNext() ? live.next() : null;
+            EventRow nextArchived = archived.hasNext() ? archived.next() : null;
+            while (nextLive != null || nextArchived != null) {
+                EventRow event;
+                if (nextArchived != null
+                        && (nextLive == null || !nextArchived.eventDatetime().isAfter(nextLive.eventDatetime()))) {
+                    event = nextArchived;
+                    nextArchived = archived.hasNext() ? archived.next() : null;
+                } else {
+                    event = nextLive;
+                    nextLive = live.hasNext() ? live.next() : null;
+                }
+                writer.writeValue(generator, new EventDto(event.id(),
+                        event.idReader(),
+                        event.idBook(),
+                        event.eventType(),
+                        event.eventDatetime().format(DATE_FORMATTER)));
+                generator.writeRaw('\n');
+                if (++exported % EXPORT_FLUSH_INTERVAL == 1) {
+                    generator.flush();
+                }
+            }
+        }
+        logger.info("Events exported: {}", exported);
+        return exported;
+    }
+
     public List<EventTypeDto> getEventTypes() {
         List<EventTypeDto> eventTypesDto = new ArrayList<>();
         for (EventType eventType : EventType.values()) {
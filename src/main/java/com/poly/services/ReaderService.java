@@ -1,46 +1,100 @@
 package com.poly.services;
 
+import com.poly.analytics.AggregationKernel;
+import com.poly.analytics.EventArchive;
+import com.poly.analytics.IntLongHashMap;
+import com.poly.analytics.MappedEventStore;
+import com.poly.analytics.QueryDeadline;
+import com.poly.domains.dto.IdCount;
+import com.poly.domains.dto.PageDto;
 import com.poly.domains.dto.ReaderDto;
-import com.poly.domains.entities.EventEntity;
+import com.poly.domains.dto.ReaderView;
 import com.poly.domains.entities.ReaderEntity;
 import com.poly.exceptions.NotFoundException;
 import com.poly.repositories.ReaderRepository;
+import com.poly.utils.ApplicationConstants;
+import com.poly.utils.DayRange;
 import com.poly.utils.EventType;
+import com.poly.utils.VersionedCollection;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Optional;
+
+import static com.poly.utils.ApplicationConstants.READERS_CACHE;
+import static com.poly.utils.ApplicationConstants.READER_LIST_CACHE;
+import static com.poly.utils.ApplicationConstants.READER_PAGE_CACHE;
 
 @Service
+@Timed(value = ApplicationConstants.SERVICE_TIMER, histogram = true)
 public class ReaderService {
 
     private final static Logger logger = LoggerFactory.getLogger(ReaderService.class);
 
     private final ReaderRepository readerRepository;
+    private final EventArchive eventArchive;
+    private final MappedEventStore mappedEventStore;
+    private final CollectionVersions collectionVersions;
+    private final QueryDeadline queryDeadline;
 
-    public ReaderService(ReaderRepository readerRepository) {
+    public ReaderService(ReaderRepository readerRepository,
+                         EventArchive eventArchive,
+                         MappedEventStore mappedEventStore,
+                         CollectionVersions collectionVersions,
+                         QueryDeadline queryDeadline) {
         this.readerRepository = readerRepository;
+        this.eventArchive = eventArchive;
+        this.mappedEventStore = mappedEventStore;
+        this.collectionVersions = collectionVersions;
+        this.queryDeadline = queryDeadline;
     }
 
+    @Cacheable(cacheNames = READER_LIST_CACHE, key = "'all'")
+    @Transactional(readOnly = true)
     public List<ReaderDto> getReaders() {
-        List<ReaderEntity> readers = readerRepository.findAll();
-        List<ReaderDto> readersDto = new ArrayList<>();
-        for (ReaderEntity reader: readers) {
-            readersDto.add(new ReaderDto(reader.getId(), reader.getFirstName(), reader.getLastName()));
-        }
-        return readersDto;
+        return Collections.unmodifiableList(readerRepository.listAll());
+    }
+
+    /**
+     * Looks up a reader for the checks of the accepted events; not exposed over HTTP.
+     */
+    @Cacheable(cacheNames = READERS_CACHE, key = "#id")
+    @Transactional(readOnly = true)
+    public ReaderDto getReader(int id) throws NotFoundException {
+        return readerRepository
+                .findDtoById(id)
+                .orElseThrow(() -> new NotFoundException("Reader not found"));
+    }
+
+    @Cacheable(cacheNames = READER_PAGE_CACHE, key = "#after + ':' + #limit")
+    @Transactional(readOnly = true)
+    public PageDto<ReaderDto> getReaders(int after, int limit) {
+        List<ReaderDto> readers = readerRepository.findPageAfter(after, PageRequest.of(0, limit + 1));
+        if (readers.size() <= limit) return new PageDto<>(Collections.unmodifiableList(readers), null);
+        List<ReaderDto> page = readers.subList(0, limit);
+        return new PageDto<>(Collections.unmodifiableList(page), String.valueOf(page.get(limit - 1).id()));
     }
 
+    @Caching(put = @CachePut(cacheNames = READERS_CACHE, key = "#result.id()"),
+            evict = @CacheEvict(cacheNames = {READER_LIST_CACHE, READER_PAGE_CACHE}, allEntries = true))
+    @Transactional
     public ReaderDto createReader(ReaderDto readerDto) {
         ReaderEntity reader = new ReaderEntity();
         reader.setFirstName(readerDto.firstName());
         reader.setLastName(readerDto.lastName());
         ReaderEntity readerEntity = readerRepository.save(reader);
+        collectionVersions.bump(VersionedCollection.READERS);
         ReaderDto newReader = new ReaderDto(readerEntity.getId(),
                 readerEntity.getFirstName(),
                 readerEntity.getLastName());
@@ -48,6 +102,9 @@ public class ReaderService {
         return newReader;
     }
 
+    @Caching(put = @CachePut(cacheNames = READERS_CACHE, key = "#result.id()"),
+            evict = @CacheEvict(cacheNames = {READER_LIST_CACHE, READER_PAGE_CACHE}, allEntries = true))
+    @Transactional
     public ReaderDto updateReader(ReaderDto readerDto) throws NotFoundException {
         ReaderEntity reader = readerRepository
                 .findById(readerDto.id())
@@ -55,31 +112,56 @@ public class ReaderService {
         reader.setFirstName(readerDto.firstName());
         reader.setLastName(readerDto.lastName());
         ReaderEntity readerEntity = readerRepository.save(reader);
+        collectionVersions.bump(VersionedCollection.READERS);
         logger.info("Reader updated: {}", readerDto);
         return new ReaderDto(readerEntity.getId(), readerEntity.getFirstName(), readerEntity.getLastName());
     }
 
+    @Transactional(readOnly = true)
     public ReaderDto getMostReader(String startInterval, String endInterval) throws NotFoundException {
-        List<ReaderEntity> readers = readerRepository.findAll();
         LocalDateTime startDateTime = LocalDateTime.parse(startInterval);
         LocalDateTime endDateTime = LocalDateTime.parse(endInterval);
-        ReaderEntity reader = readers.stream()
-                .max((reader1, reader2) -> {
-                    int valueReader1 = filteredEvents(reader1.getEvents(), startDateTime, endDateTime).size();
-                    int valueReader2 = filteredEvents(reader2.getEvents(), startDateTime, endDateTime).size();
-                    return valueReader1 - valueReader2;
-                }).orElseThrow(() -> new NotFoundException("Most reader not found"));
-        return new ReaderDto(reader.getId(), reader.getFirstName(), reader.getLastName());
+        DayRange fullDays = DayRange.within(startDateTime, endDateTime);
+        String eventType = EventType.RETURN_BOOK.name();
+        IntLongHashMap counts = AggregationKernel.threadCounts();
+        if (mappedEventStore.isReady()) {
+            mappedEventStore.countReaders(EventType.RETURN_BOOK, startDateTime, endDateTime, counts);
+        } else if (eventArchive.countReaders(EventType.RETURN_BOOK, startDateTime, endDateTime, fullDays, counts) > 0) {
+            addLiveCounts(eventType, startDateTime, endDateTime, fullDays, counts);
+        }
+        Optional<ReaderDto> mostReader;
+        if (!counts.isEmpty()) {
+            mostReader = findMostReader(counts);
+        } else {
+            queryDeadline.limitStatements();
+            Optional<ReaderView> view = fullDays.isEmpty()
+                    ? readerRepository.findMostReader(eventType, startDateTime, endDateTime)
+                    : readerRepository.findMostReader(eventType, startDateTime, endDateTime, fullDays.first(), fullDays.last());
+            mostReader = view.map(reader -> new ReaderDto(reader.getId(), reader.getFirstName(), reader.getLastName()));
+        }
+        return mostReader.orElseThrow(() -> new NotFoundException("Most reader not found"));
+    }
+
+    /**
+     * Adds the counts of the events in the database, for merging with the archived ones.
+     */
+    private void addLiveCounts(String eventType, LocalDateTime start, LocalDateTime end,
+                               DayRange fullDays, IntLongHashMap counts) {
+        queryDeadline.limitStatements();
+        List<IdCount> liveCounts = fullDays.isEmpty()
+                ? readerRepository.countEvents(eventType, start, end)
+                : readerRepository.countEvents(eventType, start, end, fullDays.first(), fullDays.last());
+        for (IdCount count : liveCounts) {
+            counts.add(count.getId(), count.getEvents());
+        }
     }
 
-    private Set<EventEntity> filteredEvents(Set<EventEntity> events,
-                                            LocalDateTime startDateTime,
-                                            LocalDateTime endDateTime) {
-        return events.stream().filter(eventEntity -> {
-            boolean isReturnedBook = eventEntity.getEventType().equals(EventType.RETURN_BOOK.name());
-            boolean isAfter = eventEntity.getEventDatetime().isAfter(startDateTime);
-            boolean isBefore = eventEntity.getEventDatetime().isBefore(endDateTime);
-            return isReturnedBook && isAfter && isBefore;
-        }).collect(Collectors.toSet());
+    /**
+     * Reader with the most counted events, the lowest id on ties, the same as {@link ReaderRepository#findMostReader}.
+     */
+    private Optional<ReaderDto> findMostReader(IntLongHashMap counts) {
+        int[] mostReaderId = new int[1];
+        AggregationKernel.topK(counts, AggregationKernel.BY_ID, mostReaderId, new long[1]);
+        return readerRepository.findDtoById(mostReaderId[0]);
     }
 }
@@ -5,5 +5,19 @@ import java.time.format.DateTimeFormatter;
 public class ApplicationConstants {
 
     public final static String API_V1 = "api/v1";
+    public final static int MAX_TOP_SIZE = 100;
+    public final static int DEFAULT_PAGE_SIZE = 100;
+    public final static int MAX_PAGE_SIZE = 1000;
+    public final static int ANALYTICS_RETRY_AFTER_SECONDS = 5;
+    public final static int INGESTION_RETRY_AFTER_SECONDS = 1;
+    public final static int MAX_BATCH_SIZE = 10000;
+    public final static String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public final static String BOOKS_CACHE = "books";
+    public final static String BOOK_LIST_CACHE = "book-list";
+    public final static String BOOK_PAGE_CACHE = "book-page";
+    public final static String READERS_CACHE = "readers";
+    public final static String READER_LIST_CACHE = "reader-list";
+    public final static String READER_PAGE_CACHE = "reader-page";
+    public final static String SERVICE_TIMER = "library.service";
     public final static DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
 }
@@ -0,0 +1,18 @@
+package com.poly.utils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Whole days [first, last) that lie entirely inside the open interval (start, end).
+ */
+public record DayRange(LocalDate first, LocalDate last) {
+
+    public static DayRange within(LocalDateTime start, LocalDateTime end) {
+        return new DayRange(start.toLocalDate().plusDays(1), end.toLocalDate());
+    }
+
+    public boolean isEmpty() {
+        return !first.isBefore(last);
+    }
+}
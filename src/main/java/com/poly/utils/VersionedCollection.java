@@ -0,0 +1,5 @@
+package com.poly.utils;
+
+public enum VersionedCollection {
+    BOOKS, READERS, EVENTS, EVENT_TYPES
+}
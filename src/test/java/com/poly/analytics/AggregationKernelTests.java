@@ -0,0 +1,113 @@
+package com.poly.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AggregationKernelTests {
+
+    private static final int EVENTS = 1_000_000;
+    private static final int KEYS = 1000;
+
+    @Test
+    public void countInRangeFiltersByTimeAndType() {
+        long[] micros = {10, 20, 20, 30, 40, 50};
+        int[] ids = {1, 2, -1, 2, 3, 1};
+        byte[] types = {0, 1, 0, 0, 1, 0};
+        IntLongHashMap counts = new IntLongHashMap();
+
+        assertEquals(3, AggregationKernel.countInRange(micros, ids, types, micros.length, 20, 50, -1, counts));
+        assertEquals(0, counts.get(1));
+        assertEquals(2, counts.get(2));
+        assertEquals(1, counts.get(3));
+
+        counts.clear();
+        assertEquals(2, AggregationKernel.countInRange(micros, ids, types, micros.length, 0, 100, 1, counts));
+        assertEquals(1, counts.get(2));
+        assertEquals(1, counts.get(3));
+    }
+
+    @Test
+    public void topKOrdersByCountThenTieBreak() {
+        IntLongHashMap counts = new IntLongHashMap();
+        counts.add(5, 3);
+        counts.add(2, 7);
+        counts.add(9, 3);
+        counts.add(4, 3);
+        counts.add(1, 1);
+        int[] ids = new int[3];
+        long[] values = new long[3];
+
+        assertEquals(3, AggregationKernel.topK(counts, AggregationKernel.BY_ID, ids, values));
+        assertArrayEquals(new int[]{2, 4, 5}, ids);
+        assertArrayEquals(new long[]{7, 3, 3}, values);
+
+        assertEquals(3, AggregationKernel.topK(counts, (id, otherId) -> Integer.compare(otherId, id), ids, values));
+        assertArrayEquals(new int[]{2, 9, 5}, ids);
+
+        int[] all = new int[10];
+        assertEquals(5, AggregationKernel.topK(counts, AggregationKernel.BY_ID, all, new long[10]));
+    }
+
+    @Test
+    public void aggregationDoesNotAllocatePerEvent() {
+        Random random = new Random(0);
+        long[] micros = new long[EVENTS];
+        int[] ids = new int[EVENTS];
+        byte[] types = new byte[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            micros[i] = i * 10L;
+            ids[i] = random.nextInt(KEYS);
+            types[i] = (byte) random.nextInt(2);
+        }
+        int[] topIds = new int[10];
+        long[] topCounts = new long[10];
+        for (int i = 0; i < 5; i++) {
+            aggregate(micros, ids, types, topIds, topCounts);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long counted = 0;
+        for (int i = 0; i < 10; i++) {
+            counted += aggregate(micros, ids, types, topIds, topCounts);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        double bytesPerEvent = (double) allocated / counted;
+        assertTrue(bytesPerEvent < 0.01, "Allocated " + allocated + " bytes for " + counted + " events");
+    }
+
+    @Test
+    public void threadCountsAreReusedUpToTheRetainedCapacity() {
+        IntLongHashMap counts = AggregationKernel.threadCounts();
+        counts.add(1, 1);
+
+        assertSame(counts, AggregationKernel.threadCounts());
+        assertTrue(counts.isEmpty());
+
+        for (int key = 0; key < AggregationKernel.MAX_RETAINED_CAPACITY; key++) {
+            counts.add(key, 1);
+        }
+        IntLongHashMap next = AggregationKernel.threadCounts();
+        assertNotSame(counts, next);
+        assertTrue(next.isEmpty());
+        assertTrue(next.capacity() <= AggregationKernel.MAX_RETAINED_CAPACITY);
+        assertSame(next, AggregationKernel.threadCounts());
+    }
+
+    private static long aggregate(long[] micros, int[] ids, byte[] types, int[] topIds, long[] topCounts) {
+        IntLongHashMap counts = AggregationKernel.threadCounts();
+        long counted = AggregationKernel.countInRange(micros, ids, types, micros.length, 5, micros.length * 10L, 1, counts);
+        AggregationKernel.topK(counts, AggregationKernel.BY_ID, topIds, topCounts);
+        return counted;
+    }
+}
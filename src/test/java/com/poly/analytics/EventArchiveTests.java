@@ -0,0 +1,243 @@
+package com.poly.analytics;
+
+import com.poly.domains.dto.EventRow;
+import com.poly.utils.DayRange;
+import com.poly.utils.EventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventArchiveTests {
+
+    private static final LocalDateTime NOON = LocalDateTime.parse("2025-03-10T12:00:00");
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void segmentsAreInvisibleUntilPublished() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer writer = archive.writer(3);
+        for (int i = 0; i < 7; i++) {
+            writer.add(event(i, NOON.plusMinutes(i)));
+        }
+        writer.flush();
+
+        assertEquals(3, writer.segments());
+        assertEquals(0, countBooks(archive, NOON.minusHours(1), NOON.plusHours(1)));
+        assertTrue(files().allMatch(name -> name.endsWith(".seg.tmp")));
+
+        writer.publish();
+
+        assertEquals(7, countBooks(archive, NOON.minusHours(1), NOON.plusHours(1)));
+        assertTrue(files().allMatch(name -> name.endsWith(".seg")));
+        assertEquals(3, files().count());
+    }
+
+    @Test
+    public void publishedSegmentsAreCountedOnceTheTransactionCommits() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer writer = archive.writer(10);
+        writer.add(event(1, NOON));
+
+        List<TransactionSynchronization> synchronizations = publishInTransaction(writer);
+
+        assertEquals(0, countBooks(archive, NOON.minusHours(1), NOON.plusHours(1)));
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertEquals(1, countBooks(archive, NOON.minusHours(1), NOON.plusHours(1)));
+        assertEquals(List.of(".seg"), files().map(name -> name.substring(name.lastIndexOf('.'))).toList());
+    }
+
+    @Test
+    public void publishedSegmentsAreDiscardedWhenTheTransactionRollsBack() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer writer = archive.writer(10);
+        writer.add(event(1, NOON));
+
+        publishInTransaction(writer)
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(0, countBooks(archive, NOON.minusHours(1), NOON.plusHours(1)));
+        assertEquals(0, files().count());
+    }
+
+    @Test
+    public void discardRemovesPublishedSegments() throws IOException {
+        EventArchive archive = archive(2);
+        EventArchive.Writer kept = archive.writer(10);
+        kept.add(event(1, NOON));
+        kept.publish();
+        EventArchive.Writer discarded = archive.writer(2);
+        for (int i = 0; i < 5; i++) {
+            discarded.add(event(i, NOON.plusMinutes(i)));
+        }
+        discarded.publish();
+        assertEquals(6, countBooks(archive, NOON.minusHours(1), NOON.plusHours(1)));
+
+        discarded.discard();
+
+        assertEquals(1, countBooks(archive, NOON.minusHours(1), NOON.plusHours(1)));
+        assertEquals(1, files().count());
+    }
+
+    @Test
+    public void loadReopensPublishedSegmentsAndDeletesUnpublishedOnes() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer published = archive.writer(10);
+        published.add(event(1, NOON));
+        published.add(event(2, NOON.plusSeconds(1)));
+        published.publish();
+        EventArchive.Writer unpublished = archive.writer(10);
+        unpublished.add(event(3, NOON));
+        unpublished.flush();
+
+        EventArchive reopened = archive(0);
+
+        assertEquals(2, countBooks(reopened, NOON.minusHours(1), NOON.plusHours(1)));
+        assertEquals(1, files().count());
+    }
+
+    @Test
+    public void intervalBoundsAreExclusive() throws IOException {
+        EventArchive archive = archive(4);
+        EventArchive.Writer writer = archive.writer(10);
+        writer.add(event(1, NOON));
+        writer.add(event(2, NOON.plusSeconds(1)));
+        writer.add(event(3, NOON.plusSeconds(2)));
+        writer.publish();
+
+        IntLongHashMap counts = new IntLongHashMap();
+        assertEquals(1, archive.countBooks(NOON, NOON.plusSeconds(2), DayRange.within(NOON, NOON.plusSeconds(2)), counts));
+        assertEquals(1, counts.get(2));
+        assertEquals(0, countBooks(archive, NOON, NOON));
+        assertEquals(1, countBooks(archive, NOON.minusNanos(1000), NOON.plusSeconds(1)));
+        assertEquals(2, countBooks(archive, NOON.minusNanos(1), NOON.plusSeconds(1).plusNanos(1)));
+        assertEquals(3, countBooks(archive, NOON.minusNanos(1), NOON.plusSeconds(2).plusNanos(500)));
+    }
+
+    @Test
+    public void wholeDaysAreLeftToTheDailyActivity() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer writer = archive.writer(10);
+        writer.add(event(1, NOON.minusDays(1)));
+        writer.add(event(2, NOON));
+        writer.add(event(3, NOON.plusDays(1)));
+        writer.publish();
+
+        LocalDateTime start = NOON.minusDays(1).minusHours(1);
+        LocalDateTime end = NOON.plusDays(1).plusHours(1);
+        IntLongHashMap counts = new IntLongHashMap();
+
+        assertEquals(2, archive.countBooks(start, end, DayRange.within(start, end), counts));
+        assertEquals(0, counts.get(2));
+    }
+
+    @Test
+    public void readersAreCountedByType() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer writer = archive.writer(10);
+        writer.add(new EventRow(1, 5, 1, EventType.TAKE_BOOK.name(), NOON));
+        writer.add(new EventRow(2, 5, 1, EventType.RETURN_BOOK.name(), NOON.plusSeconds(1)));
+        writer.add(new EventRow(3, 6, 1, EventType.RETURN_BOOK.name(), NOON.plusSeconds(2)));
+        writer.publish();
+
+        IntLongHashMap counts = new IntLongHashMap();
+        LocalDateTime start = NOON.minusHours(1);
+        LocalDateTime end = NOON.plusHours(1);
+
+        assertEquals(2, archive.countReaders(EventType.RETURN_BOOK, start, end, DayRange.within(start, end), counts));
+        assertEquals(1, counts.get(5));
+        assertEquals(1, counts.get(6));
+    }
+
+    @Test
+    public void eventsOfOverlappingSegmentsComeInTimeOrder() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer first = archive.writer(10);
+        first.add(event(1, NOON));
+        first.add(event(3, NOON.plusSeconds(2)));
+        first.add(event(5, NOON.plusSeconds(4)));
+        first.publish();
+        EventArchive.Writer second = archive.writer(10);
+        second.add(new EventRow(2, null, 2, EventType.TAKE_BOOK.name(), NOON.plusSeconds(1)));
+        second.add(event(4, NOON.plusSeconds(3)));
+        second.publish();
+
+        List<EventRow> events = new ArrayList<>();
+        Iterator<EventRow> iterator = archive.events(NOON.plusSeconds(1), NOON.plusSeconds(4));
+        iterator.forEachRemaining(events::add);
+
+        assertEquals(List.of(NOON.plusSeconds(1), NOON.plusSeconds(2), NOON.plusSeconds(3)),
+                events.stream().map(EventRow::eventDatetime).toList());
+        assertEquals(List.of(2, 3, 4), events.stream().map(EventRow::idBook).toList());
+        assertNull(events.get(0).id());
+        assertNull(events.get(0).idReader());
+        assertFalse(archive.events(NOON.plusSeconds(5), NOON.plusSeconds(6)).hasNext());
+    }
+
+    @Test
+    public void segmentsAreDecodedWhenTheExportReachesThem() throws IOException {
+        EventArchive archive = archive(0);
+        EventArchive.Writer writer = archive.writer(2);
+        for (int i = 0; i < 4; i++) {
+            writer.add(event(i, NOON.plusSeconds(i)));
+        }
+        writer.publish();
+
+        Iterator<EventRow> iterator = archive.events(NOON.minusHours(1), NOON.plusHours(1));
+        Files.delete(directory.resolve(files().sorted().toList().get(1)));
+
+        assertEquals(0, iterator.next().idBook());
+        assertEquals(1, iterator.next().idBook());
+        assertThrows(UncheckedIOException.class, iterator::hasNext);
+    }
+
+    private EventArchive archive(int cachedSegments) throws IOException {
+        EventArchive archive = new EventArchive(true, directory, cachedSegments, new SimpleMeterRegistry());
+        archive.load();
+        return archive;
+    }
+
+    private static List<TransactionSynchronization> publishInTransaction(EventArchive.Writer writer) throws IOException {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.publish();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static long countBooks(EventArchive archive, LocalDateTime start, LocalDateTime end) {
+        return archive.countBooks(start, end, DayRange.within(start, end), new IntLongHashMap());
+    }
+
+    private static EventRow event(int bookId, LocalDateTime eventDatetime) {
+        return new EventRow(bookId, 1, bookId, EventType.TAKE_BOOK.name(), eventDatetime);
+    }
+
+    private Stream<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).toList().stream();
+        }
+    }
+}
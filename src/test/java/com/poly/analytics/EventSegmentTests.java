@@ -0,0 +1,118 @@
+package com.poly.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventSegmentTests {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void columnsSurviveTheRoundTrip() throws IOException {
+        long[] micros = {-86_400_000_000L, 0, 0, 1, 1_700_000_000_000_000L, Long.MAX_VALUE / 2};
+        Integer[] readerIds = {1, null, 0, Integer.MAX_VALUE, 42, 7};
+        Integer[] bookIds = {null, 3, Integer.MAX_VALUE, 0, 42, 1_000_000};
+        byte[] types = {0, 1, 1, 0, 1, 0};
+        EventSegment.Builder builder = new EventSegment.Builder();
+        for (int i = 0; i < micros.length; i++) {
+            builder.add(micros[i], readerIds[i], bookIds[i], types[i]);
+        }
+        builder.write(directory.resolve("events.seg"));
+
+        EventSegment segment = EventSegment.open(directory.resolve("events.seg"));
+        EventSegment.Columns columns = segment.read(true, true, true);
+
+        assertEquals(micros.length, segment.size());
+        assertArrayEquals(micros, columns.micros());
+        assertArrayEquals(new int[]{1, -1, 0, Integer.MAX_VALUE, 42, 7}, columns.readerIds());
+        assertArrayEquals(new int[]{-1, 3, Integer.MAX_VALUE, 0, 42, 1_000_000}, columns.bookIds());
+        assertArrayEquals(types, columns.types());
+    }
+
+    @Test
+    public void columnsThatAreNotRequestedAreSkipped() throws IOException {
+        EventSegment.Builder builder = new EventSegment.Builder();
+        builder.add(10, 1, 2, (byte) 1);
+        builder.add(20, 3, 4, (byte) 0);
+        EventSegment segment = builder.write(directory.resolve("events.seg"));
+
+        EventSegment.Columns columns = segment.read(false, true, false);
+
+        assertArrayEquals(new long[]{10, 20}, columns.micros());
+        assertNull(columns.readerIds());
+        assertArrayEquals(new int[]{2, 4}, columns.bookIds());
+        assertNull(columns.types());
+    }
+
+    @Test
+    public void eventsOutOfTimeOrderAreRejected() {
+        EventSegment.Builder builder = new EventSegment.Builder();
+        builder.add(20, 1, 1, (byte) 0);
+        builder.add(20, 1, 1, (byte) 0);
+
+        assertThrows(IllegalArgumentException.class, () -> builder.add(19, 1, 1, (byte) 0));
+        assertEquals(2, builder.size());
+    }
+
+    @Test
+    public void headerGivesTheTimeRange() throws IOException {
+        EventSegment.Builder builder = new EventSegment.Builder();
+        builder.add(100, 1, 1, (byte) 0);
+        builder.add(200, 1, 1, (byte) 0);
+        builder.write(directory.resolve("events.seg"));
+
+        EventSegment segment = EventSegment.open(directory.resolve("events.seg"));
+
+        assertTrue(segment.overlaps(200, 201));
+        assertTrue(segment.overlaps(0, 101));
+        assertFalse(segment.overlaps(0, 100));
+        assertFalse(segment.overlaps(201, 300));
+    }
+
+    @Test
+    public void overlongVarintsAreRejected() throws IOException {
+        Path path = directory.resolve("events.seg");
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(path))) {
+            output.writeInt(0x4C484541);
+            output.writeByte(1);
+            output.writeInt(1);
+            output.writeLong(0);
+            output.writeLong(0);
+            ByteArrayOutputStream column = new ByteArrayOutputStream();
+            try (OutputStream deflater = new DeflaterOutputStream(column)) {
+                for (int i = 0; i < 11; i++) deflater.write(0x80);
+                deflater.write(0);
+            }
+            output.writeInt(column.size());
+            column.writeTo(output);
+        }
+
+        EventSegment segment = EventSegment.open(path);
+
+        assertThrows(IOException.class, () -> segment.read(false, false, false));
+    }
+
+    @Test
+    public void filesOfAnotherFormatAreRejected() throws IOException {
+        Path path = directory.resolve("events.seg");
+        Files.write(path, new byte[32]);
+
+        assertThrows(IOException.class, () -> EventSegment.open(path));
+    }
+}
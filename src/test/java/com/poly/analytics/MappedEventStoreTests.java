@@ -0,0 +1,211 @@
+package com.poly.analytics;
+
+import com.poly.domains.dto.EventRow;
+import com.poly.repositories.EventRepository;
+import com.poly.utils.EventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MappedEventStoreTests {
+
+    private static final LocalDateTime START = LocalDateTime.parse("2025-03-10T00:00:00");
+
+    @TempDir
+    private Path directory;
+
+    private final EventRepository eventRepository = mock(EventRepository.class);
+    private final List<EventRow> events = new ArrayList<>();
+    private MappedEventStore store;
+
+    @AfterEach
+    public void tearDown() {
+        if (store != null) store.shutdown();
+    }
+
+    @Test
+    public void lateEventsAreCountedBeforeTheMerge() throws Exception {
+        load(100, 1, inOrder(10));
+
+        record(event(100, 1, START.plusMinutes(5).plusSeconds(30)));
+        record(event(101, 2, START.plusMinutes(1)), event(102, 1, START.minusDays(1)));
+
+        assertEquals(3, store.lateEvents());
+        assertCounts(START.minusDays(2), START.plusDays(1));
+        assertCounts(START, START.plusMinutes(6));
+        assertCounts(START.plusMinutes(5), START.plusMinutes(9));
+    }
+
+    @Test
+    public void lateEventsAreMergedInTheBackground() throws Exception {
+        load(4, 1, inOrder(10));
+
+        for (int i = 0; i < 5; i++) {
+            record(event(100 + i, i, START.plusMinutes(8 - 2 * i).plusSeconds(1)));
+        }
+        store.awaitMerge();
+
+        assertEquals(0, store.lateEvents());
+        record(event(200, 1, START.plusHours(1)));
+        record(event(201, 3, START.plusMinutes(3)));
+        assertEquals(1, store.lateEvents());
+        assertCounts(START.minusDays(1), START.plusDays(1));
+        assertCounts(START.plusMinutes(2), START.plusMinutes(7));
+    }
+
+    @Test
+    public void eventsRecordedDuringMergesAreKept() throws Exception {
+        Random random = new Random(42);
+        load(16, 1, inOrder(1000));
+
+        for (int id = 1000; id < 20_000; id += 10) {
+            List<EventRow> batch = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                LocalDateTime eventDatetime = random.nextInt(4) == 0
+                        ? START.plusMinutes(random.nextInt(20_000)).plusNanos(random.nextInt(1000) * 1000L)
+                        : START.plusMinutes(1000 + id);
+                batch.add(new EventRow(id + i, random.nextInt(50), random.nextInt(200),
+                        EventType.values()[random.nextInt(2)].name(), eventDatetime));
+            }
+            record(batch.toArray(new EventRow[0]));
+        }
+        store.awaitMerge();
+
+        assertTrue(store.lateEvents() <= 20_000 / 32);
+        assertCounts(START.minusDays(1), START.plusYears(1));
+        for (int i = 0; i < 50; i++) {
+            LocalDateTime start = START.plusMinutes(random.nextInt(25_000)).plusNanos(random.nextInt(1000) * 1000L);
+            assertCounts(start, start.plusMinutes(random.nextInt(5000)));
+        }
+    }
+
+    @Test
+    public void intervalBoundsAreExclusive() throws Exception {
+        LocalDateTime noon = START.plusHours(12);
+        load(100, 1, List.of(event(1, 1, noon), event(2, 2, noon), event(3, 3, noon.plusNanos(1000))));
+        record(event(4, 4, noon), event(5, 5, noon.minusNanos(1000)));
+
+        assertEquals(Map.of(1, 1L, 2, 1L, 4, 1L), countBooks(noon.minusNanos(1000), noon.plusNanos(1000)));
+        assertEquals(Map.of(3, 1L), countBooks(noon, noon.plusNanos(2000)));
+        assertEquals(Map.of(), countBooks(noon.minusNanos(1000), noon));
+        assertEquals(Map.of(), countBooks(noon, noon.plusNanos(1000)));
+        assertEquals(Map.of(1, 1L, 2, 1L, 3, 1L, 4, 1L), countBooks(noon.minusNanos(1000), noon.plusNanos(1001)));
+        assertEquals(Map.of(5, 1L), countBooks(noon.minusNanos(1001), noon.minusNanos(999)));
+    }
+
+    @Test
+    public void parallelScansGiveTheSameCountsAsSequentialOnes() throws Exception {
+        Random random = new Random(7);
+        List<EventRow> stored = new ArrayList<>();
+        LocalDateTime eventDatetime = START;
+        for (int id = 0; id < 10_000; id++) {
+            eventDatetime = eventDatetime.plusNanos(random.nextInt(3) * 1_000_000L);
+            stored.add(new EventRow(id, random.nextInt(40), random.nextInt(300), EventType.values()[random.nextInt(2)].name(),
+                    eventDatetime));
+        }
+        load(100, 1, stored);
+        MappedEventStore parallel = newStore("parallel.bin", 100, 4, 37, stored);
+        try {
+            List<LocalDateTime[]> intervals = new ArrayList<>();
+            intervals.add(new LocalDateTime[]{START.minusDays(1), START.plusDays(1)});
+            intervals.add(new LocalDateTime[]{stored.get(0).eventDatetime(), stored.get(38).eventDatetime()});
+            for (int i = 0; i < 100; i++) {
+                int first = random.nextInt(stored.size());
+                int last = Math.min(stored.size() - 1, first + random.nextInt(3000));
+                intervals.add(new LocalDateTime[]{stored.get(first).eventDatetime().minusNanos(random.nextInt(2) * 1000),
+                        stored.get(last).eventDatetime()});
+            }
+            for (LocalDateTime[] interval : intervals) {
+                IntLongHashMap counts = new IntLongHashMap();
+                parallel.countBooks(interval[0], interval[1], counts);
+                assertEquals(countBooks(interval[0], interval[1]), toMap(counts));
+                for (EventType eventType : EventType.values()) {
+                    IntLongHashMap sequential = new IntLongHashMap();
+                    store.countReaders(eventType, interval[0], interval[1], sequential);
+                    counts.clear();
+                    parallel.countReaders(eventType, interval[0], interval[1], counts);
+                    assertEquals(toMap(sequential), toMap(counts));
+                }
+                assertCounts(interval[0], interval[1]);
+            }
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    private void load(int maxLateEvents, int parallelism, List<EventRow> stored) throws Exception {
+        events.addAll(stored);
+        store = newStore("events.bin", maxLateEvents, parallelism, 64, stored);
+    }
+
+    private MappedEventStore newStore(String file, int maxLateEvents, int parallelism, int sliceSize,
+                                      List<EventRow> stored) throws Exception {
+        when(eventRepository.streamAllInTimeOrder()).thenAnswer(invocation -> stored.stream());
+        MappedEventStore eventStore = new MappedEventStore(true, directory.resolve(file), maxLateEvents, parallelism,
+                sliceSize, eventRepository, new EventArchive(false, directory, 0, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry());
+        eventStore.load();
+        return eventStore;
+    }
+
+    private void record(EventRow... rows) {
+        events.addAll(List.of(rows));
+        store.recordAll(List.of(rows));
+    }
+
+    private void assertCounts(LocalDateTime start, LocalDateTime end) {
+        Map<Integer, Long> books = new HashMap<>();
+        Map<Integer, Long> readers = new HashMap<>();
+        for (EventRow event : events) {
+            if (!event.eventDatetime().isAfter(start) || !event.eventDatetime().isBefore(end)) continue;
+            books.merge(event.idBook(), 1L, Long::sum);
+            if (event.eventType().equals(EventType.RETURN_BOOK.name())) {
+                readers.merge(event.idReader(), 1L, Long::sum);
+            }
+        }
+        assertEquals(books, countBooks(start, end));
+        IntLongHashMap counts = new IntLongHashMap();
+        store.countReaders(EventType.RETURN_BOOK, start, end, counts);
+        assertEquals(readers, toMap(counts));
+    }
+
+    private Map<Integer, Long> countBooks(LocalDateTime start, LocalDateTime end) {
+        IntLongHashMap counts = new IntLongHashMap();
+        store.countBooks(start, end, counts);
+        return toMap(counts);
+    }
+
+    private static Map<Integer, Long> toMap(IntLongHashMap counts) {
+        Map<Integer, Long> map = new HashMap<>();
+        for (int slot = 0; slot < counts.capacity(); slot++) {
+            if (counts.isUsed(slot)) map.put(counts.keyAt(slot), counts.valueAt(slot));
+        }
+        return map;
+    }
+
+    private static List<EventRow> inOrder(int size) {
+        List<EventRow> rows = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            rows.add(new EventRow(id, id % 7, id % 13, EventType.values()[id % 2].name(), START.plusMinutes(id)));
+        }
+        return rows;
+    }
+
+    private static EventRow event(int id, int bookId, LocalDateTime eventDatetime) {
+        return new EventRow(id, bookId, bookId, EventType.TAKE_BOOK.name(), eventDatetime);
+    }
+}
@@ -0,0 +1,259 @@
+package com.poly.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReplicaRoutingDataSourceTests {
+
+    private static final String START_POSITION = "0/16B1E428";
+
+    private final DataSource primary = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Map<Connection, String> replayPositions = new HashMap<>();
+    private String primaryPosition = START_POSITION;
+    private long position = ReplicaRoutingDataSource.parsePosition(START_POSITION);
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void readOnlyTransactionsGoToReplicasInTurn() throws SQLException {
+        Connection first = connection(0);
+        Connection second = connection(0);
+        ReplicaRoutingDataSource dataSource = routingDataSource(first, second);
+        dataSource.checkReplicas();
+
+        assertSame(primaryConnection, dataSource.getConnection());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(first, dataSource.getConnection());
+        assertSame(second, dataSource.getConnection());
+        assertSame(first, dataSource.getConnection());
+    }
+
+    @Test
+    public void laggingAndUnreachableReplicasAreSkipped() throws SQLException {
+        Connection inSync = connection(0);
+        Connection lagging = connection(60);
+        ReplicaRoutingDataSource dataSource = routingDataSource(inSync, lagging);
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertTrue(dataSource.isAvailable("replica-1"));
+        assertFalse(dataSource.isAvailable("replica-2"));
+        assertSame(inSync, dataSource.getConnection());
+        assertSame(inSync, dataSource.getConnection());
+    }
+
+    @Test
+    public void readsGoToPrimaryUntilAReplicaHasReplayedTheLastCommit() throws SQLException {
+        Connection replica = connection(0);
+        ReplicaRoutingDataSource dataSource = routingDataSource(replica);
+        dataSource.checkReplicas();
+
+        commitWrite(dataSource);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primaryConnection, dataSource.getConnection());
+
+        replayPositions.put(replica, primaryPosition);
+        assertSame(replica, dataSource.getConnection());
+        assertSame(replica, dataSource.getConnection());
+    }
+
+    @Test
+    public void readsReachReplicasThatKeepUpWithContinuousWrites() throws SQLException {
+        Connection following = connection(0);
+        Connection behind = connection(0);
+        ReplicaRoutingDataSource dataSource = routingDataSource(following, behind);
+        dataSource.checkReplicas();
+
+        int replicaReads = 0;
+        for (int i = 0; i < 100; i++) {
+            commitWrite(dataSource);
+            replayPositions.put(following, primaryPosition);
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            for (int read = 0; read < 3; read++) {
+                Connection connection = dataSource.getConnection();
+                assertSame(following, connection);
+                replicaReads++;
+            }
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        assertEquals(300, replicaReads);
+        assertTrue(dataSource.isAvailable("replica-2"));
+        verify(behind, atLeastOnce()).close();
+    }
+
+    @Test
+    public void readsGoToPrimaryWhileACommitPositionIsUnknown() throws SQLException {
+        Connection replica = connection(0);
+        ReplicaRoutingDataSource dataSource = routingDataSource(replica);
+        dataSource.checkReplicas();
+
+        doThrow(new SQLException("connection lost")).when(primaryConnection).createStatement();
+        commitWrite(dataSource);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primaryConnection, dataSource.getConnection());
+
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = positionResultSet(() -> primaryPosition);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        doReturn(statement).when(primaryConnection).createStatement();
+        replayPositions.put(replica, primaryPosition);
+        dataSource.checkReplicas();
+        assertSame(replica, dataSource.getConnection());
+    }
+
+    @Test
+    public void replicasBehindThePrimaryWaitForTheLastWrite() throws SQLException {
+        ReplicaRoutingDataSource dataSource = routingDataSource(connection(1));
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertTrue(dataSource.isAvailable("replica-1"));
+        assertSame(primaryConnection, dataSource.getConnection());
+    }
+
+    @Test
+    public void disconnectedReplicasAreSkipped() throws SQLException {
+        Connection streaming = connection(0);
+        Connection disconnected = connection(true, false, true, 0);
+        Connection standalone = connection(false, false, false, 0);
+        ReplicaRoutingDataSource dataSource = routingDataSource(streaming, disconnected, standalone);
+        dataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertTrue(dataSource.isAvailable("replica-1"));
+        assertFalse(dataSource.isAvailable("replica-2"));
+        assertFalse(dataSource.isAvailable("replica-3"));
+        assertSame(streaming, dataSource.getConnection());
+        assertSame(streaming, dataSource.getConnection());
+    }
+
+    @Test
+    public void readsFallBackToPrimaryWhenNoReplicaIsAvailable() throws SQLException {
+        ReplicaRoutingDataSource unchecked = routingDataSource(connection(0));
+        ReplicaRoutingDataSource unreachable = new ReplicaRoutingDataSource(primary,
+                Map.of("replica-1", failingDataSource()), Duration.ofSeconds(5));
+        unreachable.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(primaryConnection, unchecked.getConnection());
+        assertFalse(unreachable.isAvailable("replica-1"));
+        assertSame(primaryConnection, unreachable.getConnection());
+    }
+
+    @Test
+    public void positionsAreComparedAsNumbers() {
+        assertEquals(-1, ReplicaRoutingDataSource.parsePosition(null));
+        assertEquals(0x16B1E428L, ReplicaRoutingDataSource.parsePosition("0/16B1E428"));
+        assertTrue(ReplicaRoutingDataSource.parsePosition("1/0") > ReplicaRoutingDataSource.parsePosition("0/FFFFFFFF"));
+    }
+
+    /**
+     * Runs a read-write transaction through the data source and commits it, advancing the primary's position.
+     */
+    private void commitWrite(ReplicaRoutingDataSource dataSource) throws SQLException {
+        TransactionSynchronizationManager.initSynchronization();
+        assertSame(primaryConnection, dataSource.getConnection());
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        position += 0x100;
+        primaryPosition = Long.toHexString(position >>> 32).toUpperCase() + "/"
+                + Long.toHexString(position & 0xFFFFFFFFL).toUpperCase();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private ReplicaRoutingDataSource routingDataSource(Connection... replicaConnections) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = positionResultSet(() -> primaryPosition);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(primaryConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (Connection connection : replicaConnections) {
+            DataSource replica = mock(DataSource.class);
+            when(replica.getConnection()).thenReturn(connection);
+            replicas.put("replica-" + (replicas.size() + 1), replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(5));
+    }
+
+    /**
+     * Connection of a streaming standby that is {@code lagSeconds} behind the primary.
+     */
+    private Connection connection(double lagSeconds) throws SQLException {
+        return connection(true, true, lagSeconds == 0, lagSeconds);
+    }
+
+    /**
+     * Connection that answers the replica query with the given row, and the replay position query
+     * with the position in {@link #replayPositions}: the primary's current one if the replica is caught up.
+     */
+    private Connection connection(boolean standby, boolean streaming, boolean caughtUp, double lagSeconds)
+            throws SQLException {
+        Connection connection = mock(Connection.class);
+        replayPositions.put(connection, caughtUp ? primaryPosition : "0/1000");
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getBoolean(1)).thenReturn(standby);
+        when(resultSet.getBoolean(2)).thenReturn(streaming);
+        when(resultSet.getBoolean(3)).thenReturn(caughtUp);
+        when(resultSet.getDouble(4)).thenReturn(lagSeconds);
+        when(resultSet.getString(5)).thenAnswer(invocation -> replayPositions.get(connection));
+        Statement replayStatement = mock(Statement.class);
+        ResultSet replayResultSet = positionResultSet(() -> replayPositions.get(connection));
+        when(connection.createStatement()).thenReturn(replayStatement);
+        when(replayStatement.executeQuery(anyString())).thenReturn(replayResultSet);
+        return connection;
+    }
+
+    private static ResultSet positionResultSet(Supplier<String> position) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString(1)).thenAnswer(invocation -> position.get());
+        return resultSet;
+    }
+
+    private static DataSource failingDataSource() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenThrow(new SQLTransientConnectionException("Connection is not available"));
+        return dataSource;
+    }
+}
@@ -23,11 +23,14 @@ import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.testcontainers.containers.PostgreSQLContainer;
 
 import java.time.LocalDateTime;
@@ -36,13 +39,20 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
+import static com.poly.controllers.StatementBudget.atMostEntityLoads;
+import static com.poly.controllers.StatementBudget.atMostStatements;
+import static com.poly.controllers.StatementBudget.statementsBesidesSequenceFetches;
 import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -145,6 +155,8 @@ public class BookControllerIntegrationTests {
     void testGetBooks() throws Exception {
         MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/"))
                 .andExpect(status().isOk())
+                .andExpect(atMostStatements(1))
+                .andExpect(atMostEntityLoads(0))
                 .andReturn();
         List<BookDto> books = objectMapper.readValue(
                 mvcResult.getResponse().getContentAsString(),
@@ -160,6 +172,37 @@ public class BookControllerIntegrationTests {
         assertEquals(books.get(1).author(), bookEntities.get(1).getAuthor());
     }
 
+    @Test
+    @Order(31)
+    void testGetBooksPaginated() throws Exception {
+        List<BookEntity> bookEntities = bookRepository.findAll();
+        bookEntities.sort(Comparator.comparing(BookEntity::getId));
+        String cursor = String.valueOf(bookEntities.get(0).getId());
+
+        MvcResult firstPage = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApplicationConstants.NEXT_CURSOR_HEADER, cursor))
+                .andReturn();
+        MvcResult secondPage = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/")
+                        .param("after", cursor)
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApplicationConstants.NEXT_CURSOR_HEADER))
+                .andReturn();
+        List<BookDto> firstBooks = objectMapper.readValue(
+                firstPage.getResponse().getContentAsString(),
+                new TypeReference<>() {}
+        );
+        List<BookDto> secondBooks = objectMapper.readValue(
+                secondPage.getResponse().getContentAsString(),
+                new TypeReference<>() {}
+        );
+
+        assertEquals(List.of(toBookDto(bookEntities.get(0))), firstBooks);
+        assertEquals(List.of(toBookDto(bookEntities.get(1))), secondBooks);
+    }
+
     @Test
     @Order(40)
     void testUpdateBooks() throws Exception {
@@ -198,6 +241,57 @@ public class BookControllerIntegrationTests {
         assertEquals(updatedBookEntities.get(1).getAuthor(), updatedBookDto2.author());
     }
 
+    @Test
+    @Order(41)
+    void testGetBooksAfterUpdate() throws Exception {
+        List<BookEntity> bookEntities = bookRepository.findAll();
+        bookEntities.sort(Comparator.comparing(BookEntity::getId));
+        List<BookDto> expected = bookEntities.stream().map(this::toBookDto).toList();
+
+        List<BookDto> books = new ArrayList<>(getBooks(""));
+        books.sort(Comparator.comparing(BookDto::id));
+        assertEquals(expected, books);
+        assertEquals(expected, getBooks("?limit=" + ApplicationConstants.MAX_PAGE_SIZE));
+        assertEquals(expected.subList(1, 2), getBooks("?after=" + expected.get(0).id() + "&limit=1"));
+    }
+
+    private List<BookDto> getBooks(String query) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/" + query))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readValue(mvcResult.getResponse().getContentAsString(), new TypeReference<>() {});
+    }
+
+    @Test
+    @Order(43)
+    void testGetBooksNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        BookEntity book = bookRepository.findAll().get(0);
+        mockMvc.perform(put("/" + ApplicationConstants.API_V1 + "/book/update")
+                        .content(objectMapper.writeValueAsString(toBookDto(book)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        String newEtag = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, newEtag);
+    }
+
     @Test
     @Order(50)
     void testGetMostPopularBook() throws Exception {
@@ -240,15 +334,18 @@ public class BookControllerIntegrationTests {
             mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/event/create")
                             .content(objectMapper.writeValueAsString(eventDto))
                             .contentType(MediaType.APPLICATION_JSON))
-                    .andExpect(status().isCreated());
+                    .andExpect(status().isCreated())
+                    .andExpect(statementsBesidesSequenceFetches(1));
         }
 
         assertEquals(eventDtoList.size(), eventRepository.findAll().size());
 
-        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/popular")
+        MvcResult mvcResult = performAsync(get("/" + ApplicationConstants.API_V1 + "/book/popular")
                         .param("start", LocalDateTime.now().minusDays(1).format(DATE_FORMATTER))
                         .param("end", LocalDateTime.now().plusDays(1).format(DATE_FORMATTER)))
                 .andExpect(status().isOk())
+                .andExpect(atMostStatements(1))
+                .andExpect(atMostEntityLoads(0))
                 .andReturn();
         BookDto mostPopularBookDto = objectMapper.readValue(
                 mvcResult.getResponse().getContentAsString(),
@@ -282,7 +379,7 @@ public class BookControllerIntegrationTests {
 
         assertEquals(events.size() + 2, eventRepository.findAll().size());
 
-        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/popular")
+        MvcResult mvcResult = performAsync(get("/" + ApplicationConstants.API_V1 + "/book/popular")
                         .param("start", LocalDateTime.now().minusDays(1).format(DATE_FORMATTER))
                         .param("end", LocalDateTime.now().plusDays(1).format(DATE_FORMATTER)))
                 .andExpect(status().isOk())
@@ -309,12 +406,70 @@ public class BookControllerIntegrationTests {
     @Test
     @Order(53)
     void testGetMostPopularBookNoBooksBadRequest() throws Exception {
-        mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/most")
+        performAsync(get("/" + ApplicationConstants.API_V1 + "/reader/most")
                         .param("start", LocalDateTime.now().minusYears(1).format(DATE_FORMATTER))
                         .param("end", LocalDateTime.now().minusYears(1).format(DATE_FORMATTER)))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @Order(54)
+    void testGetMostPopularBooks() throws Exception {
+        String start = LocalDateTime.now().minusDays(1).format(DATE_FORMATTER);
+        String end = LocalDateTime.now().plusDays(1).format(DATE_FORMATTER);
+
+        MvcResult popularResult = performAsync(get("/" + ApplicationConstants.API_V1 + "/book/popular")
+                        .param("start", start)
+                        .param("end", end))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult topResult = performAsync(get("/" + ApplicationConstants.API_V1 + "/book/popular/top")
+                        .param("start", start)
+                        .param("end", end)
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(atMostStatements(1))
+                .andExpect(atMostEntityLoads(0))
+                .andReturn();
+        BookDto mostPopularBookDto = objectMapper.readValue(
+                popularResult.getResponse().getContentAsString(),
+                new TypeReference<>() {}
+        );
+        List<BookDto> mostPopularBooks = objectMapper.readValue(
+                topResult.getResponse().getContentAsString(),
+                new TypeReference<>() {}
+        );
+
+        // Both books have four events since testGetMostPopularBookAlphabeticOrder, so the tie is broken by author
+        List<BookEntity> books = bookRepository.findAll();
+        for (BookEntity book : books) {
+            assertEquals(4, eventRepository.findAll().stream()
+                    .filter(event -> event.getBook().getId().equals(book.getId()))
+                    .count());
+        }
+        books.sort(Comparator.comparing(BookEntity::getAuthor).thenComparing(BookEntity::getId));
+
+        assertEquals(books.stream().map(this::toBookDto).toList(), mostPopularBooks);
+        assertEquals(mostPopularBookDto, mostPopularBooks.get(0));
+    }
+
+    @Test
+    @Order(55)
+    void testGetMostPopularBooksBadLimit() throws Exception {
+        performAsync(get("/" + ApplicationConstants.API_V1 + "/book/popular/top")
+                        .param("start", LocalDateTime.now().minusDays(1).format(DATE_FORMATTER))
+                        .param("end", LocalDateTime.now().plusDays(1).format(DATE_FORMATTER))
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+
     private BookDto generateBookDto(Integer id) {
         return new BookDto(id,
                 generateString(),
@@ -343,6 +498,10 @@ public class BookControllerIntegrationTests {
                 LocalDateTime.parse(datetime).plusHours(1).format(DATE_FORMATTER));
     }
 
+    private BookDto toBookDto(BookEntity book) {
+        return new BookDto(book.getId(), book.getName(), book.getAuthor());
+    }
+
     private String generateString() {
         return random.ints(LEFT_LIMIT, RIGHT_LIMIT + 1)
                 .limit(STRING_LENGTH)
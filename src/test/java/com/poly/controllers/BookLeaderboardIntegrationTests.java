@@ -0,0 +1,163 @@
+package com.poly.controllers;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poly.analytics.BookLeaderboard;
+import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.BookView;
+import com.poly.domains.dto.EventDto;
+import com.poly.domains.dto.ReaderDto;
+import com.poly.domains.entities.BookEntity;
+import com.poly.repositories.BookRepository;
+import com.poly.repositories.ReaderRepository;
+import com.poly.utils.ApplicationConstants;
+import com.poly.utils.EventType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares the in-memory leaderboard with the SQL query on the same events. Only the last
+ * day keeps its events in memory, so older partial hours are counted in the database.
+ */
+@SpringBootTest(properties = {
+        "library-helper.leaderboard.enabled=true",
+        "library-helper.leaderboard.detail-hours=24"
+})
+@AutoConfigureMockMvc(addFilters = false)
+@SuppressWarnings("resource")
+public class BookLeaderboardIntegrationTests {
+
+    private static final List<String> AUTHORS = List.of("Tolstoy", "Chekhov", "Tolstoy", "Bulgakov", "Chekhov", "Tolstoy");
+
+    private final static PostgreSQLContainer<?> postgreSQLContainer =
+            new PostgreSQLContainer<>("postgres:14.7-alpine").withReuse(true);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReaderRepository readerRepository;
+
+    @Autowired
+    private BookLeaderboard bookLeaderboard;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+    }
+
+    @BeforeAll
+    static void startContainer() {
+        postgreSQLContainer.start();
+    }
+
+    @AfterAll
+    static void deleteData() {
+        postgreSQLContainer.stop();
+    }
+
+    @Test
+    void testLeaderboardMatchesSql() throws Exception {
+        assertTrue(bookLeaderboard.isReady());
+        Random random = new Random(4);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime first = now.minusDays(75);
+
+        for (String author : AUTHORS) {
+            mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/book/create")
+                            .content(objectMapper.writeValueAsString(new BookDto(null, "Book", author)))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/reader/create")
+                        .content(objectMapper.writeValueAsString(new ReaderDto(null, "Anna", "Karenina")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        List<Integer> bookIds = bookRepository.findAll().stream().map(BookEntity::getId).toList();
+        Integer readerId = readerRepository.findAll().get(0).getId();
+
+        List<EventDto> events = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            LocalDateTime eventDatetime = i % 5 == 0
+                    ? first.plusHours(random.nextInt(75 * 24 + 2))
+                    : first.plus(random.nextLong(ChronoUnit.MICROS.between(first, now.plusHours(2))), ChronoUnit.MICROS);
+            events.add(new EventDto(null, readerId, bookIds.get(random.nextInt(bookIds.size())),
+                    EventType.TAKE_BOOK.name(), eventDatetime.format(DATE_FORMATTER)));
+        }
+        mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/event/batch")
+                        .content(objectMapper.writeValueAsString(events))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        List<LocalDateTime[]> intervals = new ArrayList<>();
+        intervals.add(new LocalDateTime[]{first.minusDays(1), now.plusDays(1)});
+        intervals.add(new LocalDateTime[]{first.plusMonths(1).withDayOfMonth(1), now.withDayOfMonth(1)});
+        intervals.add(new LocalDateTime[]{now.minusDays(3), now.minusHours(1)});
+        for (int i = 0; i < 60; i++) {
+            LocalDateTime start = first.plus(random.nextLong(ChronoUnit.MICROS.between(first, now)), ChronoUnit.MICROS);
+            LocalDateTime end = switch (i % 4) {
+                case 0 -> start.plusMinutes(random.nextInt(120));
+                case 1 -> start.plusHours(random.nextInt(72)).plusSeconds(random.nextInt(3600));
+                case 2 -> start.plusDays(random.nextInt(40)).truncatedTo(ChronoUnit.HOURS);
+                default -> now.plus(random.nextLong(ChronoUnit.MICROS.between(now.minusDays(2), now.plusHours(2))),
+                        ChronoUnit.MICROS).minusDays(2);
+            };
+            intervals.add(end.isAfter(start) ? new LocalDateTime[]{start, end} : new LocalDateTime[]{end, start});
+        }
+
+        for (LocalDateTime[] interval : intervals) {
+            List<BookDto> expected = new ArrayList<>();
+            for (BookView view : bookRepository.findMostPopularBooks(interval[0], interval[1], ApplicationConstants.MAX_TOP_SIZE)) {
+                expected.add(new BookDto(view.getId(), view.getName(), view.getAuthor()));
+            }
+            assertEquals(expected, getMostPopularBooks(interval[0], interval[1]),
+                    () -> "Interval " + interval[0] + " - " + interval[1]);
+        }
+    }
+
+    private List<BookDto> getMostPopularBooks(LocalDateTime start, LocalDateTime end) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/book/popular/top")
+                        .param("start", start.format(DATE_FORMATTER))
+                        .param("end", end.format(DATE_FORMATTER))
+                        .param("limit", String.valueOf(ApplicationConstants.MAX_TOP_SIZE)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {});
+    }
+}
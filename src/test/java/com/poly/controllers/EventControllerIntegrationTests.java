@@ -3,15 +3,20 @@ package com.poly.controllers;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.poly.domains.dto.BookDto;
+import com.poly.domains.dto.EventBatchItemDto;
 import com.poly.domains.dto.EventDto;
 import com.poly.domains.dto.EventTypeDto;
 import com.poly.domains.dto.ReaderDto;
+import com.poly.domains.entities.BookActivityEntity;
 import com.poly.domains.entities.BookEntity;
 import com.poly.domains.entities.EventEntity;
+import com.poly.domains.entities.ReaderActivityEntity;
 import com.poly.domains.entities.ReaderEntity;
 import com.poly.exceptions.UnsupportedArgumentException;
+import com.poly.repositories.BookActivityRepository;
 import com.poly.repositories.BookRepository;
 import com.poly.repositories.EventRepository;
+import com.poly.repositories.ReaderActivityRepository;
 import com.poly.repositories.ReaderRepository;
 import com.poly.utils.ApplicationConstants;
 import com.poly.utils.EventType;
@@ -34,17 +39,22 @@ import org.testcontainers.containers.PostgreSQLContainer;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Random;
 
+import static com.poly.controllers.StatementBudget.statementsBesidesSequenceFetches;
 import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -76,6 +86,12 @@ public class EventControllerIntegrationTests {
     @Autowired
     private EventRepository backFieldEventRepository;
 
+    @Autowired
+    private BookActivityRepository bookActivityRepository;
+
+    @Autowired
+    private ReaderActivityRepository readerActivityRepository;
+
     private static BookRepository bookRepository;
     private static ReaderRepository readerRepository;
     private static EventRepository eventRepository;
@@ -162,6 +178,7 @@ public class EventControllerIntegrationTests {
                         .content(objectMapper.writeValueAsString(take1))
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isCreated())
+                .andExpect(statementsBesidesSequenceFetches(1))
                 .andReturn();
         MvcResult mvcReturn1 = mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/event/create")
                         .content(objectMapper.writeValueAsString(return1))
@@ -203,6 +220,25 @@ public class EventControllerIntegrationTests {
                 events.get(2).getBook().getId(),
                 events.get(2).getEventType(),
                 events.get(2).getEventDatetime().format(DATE_FORMATTER)));
+
+        assertEquals(2, bookActivity(take1.idBook()));
+        assertEquals(1, bookActivity(take2.idBook()));
+        assertEquals(2, readerActivity(take1.idReader()));
+        assertEquals(1, readerActivity(take2.idReader()));
+    }
+
+    private long bookActivity(Integer idBook) {
+        return bookActivityRepository.findAll().stream()
+                .filter(activity -> activity.getIdBook().equals(idBook))
+                .mapToLong(BookActivityEntity::getEventCount)
+                .sum();
+    }
+
+    private long readerActivity(Integer idReader) {
+        return readerActivityRepository.findAll().stream()
+                .filter(activity -> activity.getIdReader().equals(idReader))
+                .mapToLong(ReaderActivityEntity::getEventCount)
+                .sum();
     }
 
     @Test
@@ -239,6 +275,116 @@ public class EventControllerIntegrationTests {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @Order(13)
+    void testCreateEventsBatch() throws Exception {
+        List<BookEntity> books = bookRepository.findAll();
+        List<ReaderEntity> readers = readerRepository.findAll();
+        long eventsBefore = eventRepository.count();
+
+        List<EventDto> batch = List.of(
+                generateTakeEventDto(readers.get(0).getId(), books.get(1).getId()),
+                generateTakeEventDto(-1, books.get(0).getId()),
+                new EventDto(null,
+                        readers.get(1).getId(),
+                        books.get(0).getId(),
+                        "BAD_TYPE",
+                        LocalDateTime.now().format(DATE_FORMATTER)),
+                generateTakeEventDto(readers.get(1).getId(), books.get(0).getId()));
+
+        MvcResult mvcResult = mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/event/batch")
+                        .content(objectMapper.writeValueAsString(batch))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        List<EventBatchItemDto> results = objectMapper.readValue(
+                mvcResult.getResponse().getContentAsString(),
+                new TypeReference<>() {}
+        );
+
+        assertEquals(batch.size(), results.size());
+        assertEquals(eventsBefore + 2, eventRepository.count());
+        for (int i : List.of(0, 3)) {
+            EventDto created = results.get(i).event();
+            assertEquals(i, results.get(i).index());
+            assertNull(results.get(i).error());
+            EventEntity event = eventRepository.findById(created.id()).orElseThrow();
+            assertEquals(new EventDto(event.getId(),
+                    batch.get(i).idReader(),
+                    batch.get(i).idBook(),
+                    batch.get(i).eventType(),
+                    batch.get(i).eventDatetime()), created);
+        }
+        assertEquals(new EventBatchItemDto(1, null, "Reader not found"), results.get(1));
+        assertEquals(new EventBatchItemDto(2, null, "Unsupported event type: BAD_TYPE"), results.get(2));
+    }
+
+    @Test
+    @Order(14)
+    void testCreateEventsEmptyBatch() throws Exception {
+        mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/event/batch")
+                        .content("[]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(15)
+    void testCreateEventIncorrectBookId() throws Exception {
+        List<ReaderEntity> readers = readerRepository.findAll();
+        long eventsBefore = eventRepository.count();
+
+        EventDto takeBook = generateTakeEventDto(readers.get(0).getId(), -1);
+
+        mockMvc.perform(post("/" + ApplicationConstants.API_V1 + "/event/create")
+                        .content(objectMapper.writeValueAsString(takeBook))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        assertEquals(eventsBefore, eventRepository.count());
+    }
+
+    @Test
+    @Order(20)
+    void testExportEvents() throws Exception {
+        List<EventEntity> events = eventRepository.findAll();
+        events.sort(Comparator.comparing(EventEntity::getEventDatetime).thenComparing(EventEntity::getId));
+
+        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/event/export")
+                        .param("from", LocalDateTime.now().minusDays(1).format(DATE_FORMATTER))
+                        .param("to", LocalDateTime.now().plusDays(1).format(DATE_FORMATTER)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String content = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<EventDto> exportedEvents = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            exportedEvents.add(objectMapper.readValue(line, EventDto.class));
+        }
+
+        assertEquals(events.size(), exportedEvents.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(new EventDto(events.get(i).getId(),
+                    events.get(i).getReader().getId(),
+                    events.get(i).getBook().getId(),
+                    events.get(i).getEventType(),
+                    events.get(i).getEventDatetime().format(DATE_FORMATTER)), exportedEvents.get(i));
+        }
+    }
+
+    @Test
+    @Order(21)
+    void testExportEventsBadRequest() throws Exception {
+        mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/event/export")
+                        .param("from", "yesterday")
+                        .param("to", LocalDateTime.now().format(DATE_FORMATTER)))
+                .andExpect(status().isBadRequest());
+    }
+
     private BookDto generateBookDto() {
         return new BookDto(null,
                 generateString(),
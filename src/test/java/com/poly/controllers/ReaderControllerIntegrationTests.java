@@ -28,20 +28,28 @@ import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.testcontainers.containers.PostgreSQLContainer;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 
+import static com.poly.controllers.StatementBudget.atMostEntityLoads;
+import static com.poly.controllers.StatementBudget.atMostStatements;
 import static com.poly.utils.ApplicationConstants.DATE_FORMATTER;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -144,6 +152,8 @@ class ReaderControllerIntegrationTests {
     void testGetReaders() throws Exception {
         MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/"))
                 .andExpect(status().isOk())
+                .andExpect(atMostStatements(1))
+                .andExpect(atMostEntityLoads(0))
                 .andReturn();
         List<ReaderDto> readers = objectMapper.readValue(
                 mvcResult.getResponse().getContentAsString(),
@@ -159,6 +169,37 @@ class ReaderControllerIntegrationTests {
         assertEquals(readers.get(1).lastName(), readerEntities.get(1).getLastName());
     }
 
+    @Test
+    @Order(31)
+    void testGetReadersPaginated() throws Exception {
+        List<ReaderEntity> readerEntities = readerRepository.findAll();
+        readerEntities.sort(Comparator.comparing(ReaderEntity::getId));
+        String cursor = String.valueOf(readerEntities.get(0).getId());
+
+        MvcResult firstPage = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApplicationConstants.NEXT_CURSOR_HEADER, cursor))
+                .andReturn();
+        MvcResult secondPage = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/")
+                        .param("after", cursor)
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ApplicationConstants.NEXT_CURSOR_HEADER))
+                .andReturn();
+        List<ReaderDto> firstReaders = objectMapper.readValue(
+                firstPage.getResponse().getContentAsString(),
+                new TypeReference<>() {}
+        );
+        List<ReaderDto> secondReaders = objectMapper.readValue(
+                secondPage.getResponse().getContentAsString(),
+                new TypeReference<>() {}
+        );
+
+        assertEquals(List.of(toReaderDto(readerEntities.get(0))), firstReaders);
+        assertEquals(List.of(toReaderDto(readerEntities.get(1))), secondReaders);
+    }
+
     @Test
     @Order(40)
     void testUpdateReaders() throws Exception {
@@ -197,6 +238,27 @@ class ReaderControllerIntegrationTests {
         assertEquals(updatedReaderEntities.get(1).getLastName(), updatedReaderDto2.lastName());
     }
 
+    @Test
+    @Order(41)
+    void testGetReadersAfterUpdate() throws Exception {
+        List<ReaderEntity> readerEntities = readerRepository.findAll();
+        readerEntities.sort(Comparator.comparing(ReaderEntity::getId));
+        List<ReaderDto> expected = readerEntities.stream().map(this::toReaderDto).toList();
+
+        List<ReaderDto> readers = new ArrayList<>(getReaders(""));
+        readers.sort(Comparator.comparing(ReaderDto::id));
+        assertEquals(expected, readers);
+        assertEquals(expected, getReaders("?limit=" + ApplicationConstants.MAX_PAGE_SIZE));
+        assertEquals(expected.subList(1, 2), getReaders("?after=" + expected.get(0).id() + "&limit=1"));
+    }
+
+    private List<ReaderDto> getReaders(String query) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/" + query))
+                .andExpect(status().isOk())
+                .andReturn();
+        return objectMapper.readValue(mvcResult.getResponse().getContentAsString(), new TypeReference<>() {});
+    }
+
     @Test
     @Order(50)
     void testGetMostReader() throws Exception {
@@ -244,10 +306,12 @@ class ReaderControllerIntegrationTests {
 
         assertEquals(eventDtoList.size(), eventRepository.findAll().size());
 
-        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/most")
+        MvcResult mvcResult = performAsync(get("/" + ApplicationConstants.API_V1 + "/reader/most")
                         .param("start", LocalDateTime.now().minusDays(1).format(DATE_FORMATTER))
                         .param("end", LocalDateTime.now().plusDays(1).format(DATE_FORMATTER)))
                 .andExpect(status().isOk())
+                .andExpect(atMostStatements(1))
+                .andExpect(atMostEntityLoads(0))
                 .andReturn();
         ReaderDto mostReaderDto = objectMapper.readValue(
                 mvcResult.getResponse().getContentAsString(),
@@ -281,7 +345,7 @@ class ReaderControllerIntegrationTests {
 
         assertEquals(events.size() + 2, eventRepository.findAll().size());
 
-        MvcResult mvcResult = mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/most")
+        MvcResult mvcResult = performAsync(get("/" + ApplicationConstants.API_V1 + "/reader/most")
                         .param("start", LocalDateTime.now().minusDays(1).format(DATE_FORMATTER))
                         .param("end", LocalDateTime.now().plusDays(1).format(DATE_FORMATTER)))
                 .andExpect(status().isOk())
@@ -307,12 +371,19 @@ class ReaderControllerIntegrationTests {
     @Test
     @Order(53)
     void testGetMostReaderNoReadersBadRequest() throws Exception {
-        mockMvc.perform(get("/" + ApplicationConstants.API_V1 + "/reader/most")
+        performAsync(get("/" + ApplicationConstants.API_V1 + "/reader/most")
                 .param("start", LocalDateTime.now().minusYears(1).format(DATE_FORMATTER))
                 .param("end", LocalDateTime.now().minusYears(1).format(DATE_FORMATTER)))
                 .andExpect(status().isOk());
     }
 
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+
     private BookDto generateBookDto() {
         return new BookDto(null,
                 generateString(),
@@ -341,6 +412,10 @@ class ReaderControllerIntegrationTests {
                 LocalDateTime.parse(datetime).plusHours(1).format(DATE_FORMATTER));
     }
 
+    private ReaderDto toReaderDto(ReaderEntity reader) {
+        return new ReaderDto(reader.getId(), reader.getFirstName(), reader.getLastName());
+    }
+
     private String generateString() {
         return random.ints(LEFT_LIMIT, RIGHT_LIMIT + 1)
                 .limit(STRING_LENGTH)
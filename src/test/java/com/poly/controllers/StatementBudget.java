@@ -0,0 +1,51 @@
+package com.poly.controllers;
+
+import com.poly.config.StatementCounter;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Matchers on the number of SQL statements and entity loads of a request, counted by {@link StatementCounter}.
+ * For an asynchronous request they apply to the result of the async dispatch.
+ */
+final class StatementBudget {
+
+    private StatementBudget() {}
+
+    static ResultMatcher atMostStatements(int maxStatements) {
+        return result -> {
+            StatementCounter.Counts counts = counts(result);
+            assertTrue(counts.statements() <= maxStatements,
+                    "Expected at most " + maxStatements + " statements, but the request made " + counts);
+        };
+    }
+
+    /**
+     * Exact number of statements besides the sequence fetches, which only come once per allocated block of ids.
+     */
+    static ResultMatcher statementsBesidesSequenceFetches(int expectedStatements) {
+        return result -> {
+            StatementCounter.Counts counts = counts(result);
+            assertEquals(expectedStatements, counts.statements() - counts.sequenceFetches(),
+                    "Unexpected number of statements: the request made " + counts);
+        };
+    }
+
+    static ResultMatcher atMostEntityLoads(int maxEntityLoads) {
+        return result -> {
+            StatementCounter.Counts counts = counts(result);
+            assertTrue(counts.entityLoads() <= maxEntityLoads,
+                    "Expected at most " + maxEntityLoads + " entity loads, but the request made " + counts);
+        };
+    }
+
+    private static StatementCounter.Counts counts(MvcResult result) {
+        StatementCounter.Counts counts = (StatementCounter.Counts) result.getRequest().getAttribute(StatementCounter.REQUEST_ATTRIBUTE);
+        assertNotNull(counts, "The request was not counted");
+        return counts;
+    }
+}
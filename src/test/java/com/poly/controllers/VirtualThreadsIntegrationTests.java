@@ -0,0 +1,150 @@
+package com.poly.controllers;
+
+import com.poly.config.ConnectionGateDataSource;
+import com.poly.utils.ApplicationConstants;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the application on a real port with virtual threads, so the requests go through Tomcat's executor.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "library-helper.virtual-threads.enabled=true",
+        "spring.datasource.hikari.maximum-pool-size=2"
+})
+@SuppressWarnings("resource")
+public class VirtualThreadsIntegrationTests {
+
+    private static final String HOLD_CONNECTION = "X-Hold-Connection";
+    private static final int REQUESTS = 20;
+
+    private final static PostgreSQLContainer<?> postgreSQLContainer =
+            new PostgreSQLContainer<>("postgres:14.7-alpine").withReuse(true);
+
+    private static final AtomicInteger virtualRequests = new AtomicInteger();
+    private static final AtomicInteger platformRequests = new AtomicInteger();
+    private static final AtomicInteger heldConnections = new AtomicInteger();
+    private static final AtomicInteger maxHeldConnections = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+    }
+
+    @BeforeAll
+    static void startContainer() {
+        postgreSQLContainer.start();
+    }
+
+    @AfterAll
+    static void deleteData() {
+        postgreSQLContainer.stop();
+    }
+
+    @Test
+    void testRequestsRunOnVirtualThreadsBehindTheConnectionGate() throws Exception {
+        ConnectionGateDataSource gate = assertInstanceOf(ConnectionGateDataSource.class, dataSource);
+        HikariDataSource pool = gate.unwrap(HikariDataSource.class);
+        HttpClient client = HttpClient.newHttpClient();
+
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(client.sendAsync(HttpRequest.newBuilder(URI.create(
+                                    "http://localhost:" + port + "/" + ApplicationConstants.API_V1 + "/book/"))
+                            .header(HOLD_CONNECTION, "true")
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding()));
+        }
+        int maxWaitingAtGate = 0;
+        int maxWaitingInPool = 0;
+        while (!responses.stream().allMatch(CompletableFuture::isDone)) {
+            maxWaitingAtGate = Math.max(maxWaitingAtGate, gate.getWaitingCount());
+            maxWaitingInPool = Math.max(maxWaitingInPool, pool.getHikariPoolMXBean().getThreadsAwaitingConnection());
+            Thread.sleep(5);
+        }
+
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            assertEquals(200, response.get().statusCode());
+        }
+        assertEquals(REQUESTS, virtualRequests.get());
+        assertEquals(0, platformRequests.get());
+        assertEquals(2, maxHeldConnections.get());
+        assertTrue(maxWaitingAtGate > 0);
+        assertEquals(0, maxWaitingInPool);
+    }
+
+    @TestConfiguration
+    static class HoldConnectionConfiguration {
+
+        /**
+         * Records the kind of thread serving each request, and for requests with the hold header keeps
+         * a connection open for a while, counting how many are held at once.
+         */
+        @Bean
+        OncePerRequestFilter holdConnectionFilter(DataSource dataSource) {
+            return new OncePerRequestFilter() {
+                @Override
+                protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                                FilterChain filterChain) throws ServletException, IOException {
+                    if (request.getHeader(HOLD_CONNECTION) == null) {
+                        filterChain.doFilter(request, response);
+                        return;
+                    }
+                    (Thread.currentThread().isVirtual() ? virtualRequests : platformRequests).incrementAndGet();
+                    try (Connection ignored = dataSource.getConnection()) {
+                        int held = heldConnections.incrementAndGet();
+                        maxHeldConnections.accumulateAndGet(held, Math::max);
+                        Thread.sleep(100);
+                        heldConnections.decrementAndGet();
+                    } catch (SQLException e) {
+                        throw new ServletException(e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ServletException(e);
+                    }
+                    filterChain.doFilter(request, response);
+                }
+            };
+        }
+    }
+}
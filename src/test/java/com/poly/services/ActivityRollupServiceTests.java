@@ -0,0 +1,101 @@
+package com.poly.services;
+
+import com.poly.analytics.EventArchive;
+import com.poly.domains.dto.EventRow;
+import com.poly.repositories.ActivityBatchRepository;
+import com.poly.repositories.BookActivityRepository;
+import com.poly.repositories.ReaderActivityRepository;
+import com.poly.utils.EventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ActivityRollupServiceTests {
+
+    private static final LocalDateTime NOON = LocalDateTime.parse("2020-01-01T12:00:00");
+
+    @TempDir
+    private Path directory;
+
+    private final BookActivityRepository bookActivityRepository = mock(BookActivityRepository.class);
+    private final ReaderActivityRepository readerActivityRepository = mock(ReaderActivityRepository.class);
+    private final ActivityBatchRepository activityBatchRepository = mock(ActivityBatchRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private EventArchive eventArchive;
+    private ActivityRollupService activityRollupService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        eventArchive = new EventArchive(true, directory, 0, new SimpleMeterRegistry());
+        eventArchive.load();
+        EventArchive.Writer writer = eventArchive.writer(10);
+        writer.add(new EventRow(1, 1, 7, EventType.TAKE_BOOK.name(), NOON));
+        writer.add(new EventRow(2, 1, 7, EventType.TAKE_BOOK.name(), NOON.plusHours(1)));
+        writer.add(new EventRow(3, null, 7, EventType.RETURN_BOOK.name(), NOON.plusDays(1)));
+        writer.publish();
+        activityRollupService = new ActivityRollupService(bookActivityRepository, readerActivityRepository,
+                activityBatchRepository, eventArchive, transactionManager);
+    }
+
+    @Test
+    public void emptyTablesAreRebuiltFromTheEventsAndTheArchive() {
+        SortedMap<ActivityBatchRepository.Key, Long> books = new TreeMap<>();
+        SortedMap<ActivityBatchRepository.Key, Long> readers = new TreeMap<>();
+        doAnswer(invocation -> collect(invocation.getArgument(0), books)).when(activityBatchRepository).incrementBooks(any());
+        doAnswer(invocation -> collect(invocation.getArgument(0), readers)).when(activityBatchRepository).incrementReaders(any());
+
+        activityRollupService.afterSingletonsInstantiated();
+
+        InOrder order = inOrder(activityBatchRepository, bookActivityRepository, readerActivityRepository);
+        order.verify(activityBatchRepository).lockTables();
+        order.verify(bookActivityRepository).rebuildFromEvents();
+        order.verify(readerActivityRepository).rebuildFromEvents();
+        verify(transactionManager).commit(any());
+        LocalDate day = NOON.toLocalDate();
+        assertEquals(new TreeMap<>(Map.of(
+                new ActivityBatchRepository.Key(day, 7, EventType.TAKE_BOOK.name()), 2L,
+                new ActivityBatchRepository.Key(day.plusDays(1), 7, EventType.RETURN_BOOK.name()), 1L)), books);
+        assertEquals(new TreeMap<>(Map.of(
+                new ActivityBatchRepository.Key(day, 1, EventType.TAKE_BOOK.name()), 2L)), readers);
+    }
+
+    @Test
+    public void filledTablesAreLeftAlone() {
+        when(bookActivityRepository.count()).thenReturn(3L);
+        when(readerActivityRepository.count()).thenReturn(2L);
+
+        activityRollupService.afterSingletonsInstantiated();
+
+        verify(activityBatchRepository, never()).lockTables();
+        verify(bookActivityRepository, never()).rebuildFromEvents();
+        verify(readerActivityRepository, never()).rebuildFromEvents();
+        verify(activityBatchRepository, never()).incrementBooks(any());
+    }
+
+    private static Object collect(Map<ActivityBatchRepository.Key, Long> deltas, Map<ActivityBatchRepository.Key, Long> all) {
+        deltas.forEach((key, delta) -> all.merge(key, delta, Long::sum));
+        return null;
+    }
+}
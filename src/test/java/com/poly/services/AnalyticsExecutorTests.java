@@ -0,0 +1,81 @@
+package com.poly.services;
+
+import com.poly.analytics.QueryDeadline;
+import com.poly.exceptions.AnalyticsUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class AnalyticsExecutorTests {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final QueryDeadline queryDeadline = new QueryDeadline(jdbcTemplate);
+    private final AnalyticsExecutor analyticsExecutor = new AnalyticsExecutor(1, 1, Duration.ofSeconds(10), queryDeadline);
+
+    @AfterEach
+    public void tearDown() {
+        analyticsExecutor.shutdown();
+    }
+
+    @Test
+    public void tasksAnsweredInMemoryRunNoStatements() throws Exception {
+        assertEquals(42, analyticsExecutor.submit(() -> 42).get());
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void statementsAreLimitedToTheTimeLeft() throws Exception {
+        analyticsExecutor.submit(() -> {
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                queryDeadline.limitStatements();
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+            return null;
+        }).get();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).execute(sql.capture());
+        long timeoutMillis = Long.parseLong(sql.getValue().substring("SET LOCAL statement_timeout = ".length()));
+        assertTrue(timeoutMillis > 0 && timeoutMillis <= 10_000);
+    }
+
+    @Test
+    public void statementsOutsideATaskAreNotLimited() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            queryDeadline.limitStatements();
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void queryTimeoutsMakeAnalyticsUnavailable() {
+        CompletableFuture<Object> future = analyticsExecutor.submit(() -> {
+            throw new QueryTimeoutException("canceling statement due to statement timeout");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(AnalyticsUnavailableException.class, e.getCause());
+    }
+}
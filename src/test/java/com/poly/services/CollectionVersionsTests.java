@@ -0,0 +1,59 @@
+package com.poly.services;
+
+import com.poly.utils.VersionedCollection;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CollectionVersionsTests {
+
+    private final CollectionVersions collectionVersions = new CollectionVersions();
+
+    @Test
+    public void lastModifiedIsSentOnceItsSecondIsOver() throws InterruptedException {
+        collectionVersions.bump(VersionedCollection.BOOKS);
+        long bumpedAt = System.currentTimeMillis();
+
+        long lastModified = collectionVersions.lastModified(VersionedCollection.BOOKS);
+        if (lastModified == -1) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            collectionVersions.checkNotModified(new ServletWebRequest(new MockHttpServletRequest(), response),
+                    VersionedCollection.BOOKS);
+            assertNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+            lastModified = awaitLastModified();
+        }
+
+        assertEquals(0, lastModified % 1000);
+        assertTrue(lastModified > bumpedAt - 1000);
+        assertTrue(lastModified <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void changeRightAfterTheLastModifiedDateIsNotHidden() throws InterruptedException {
+        long lastModified = awaitLastModified();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        assertTrue(collectionVersions.checkNotModified(new ServletWebRequest(request, new MockHttpServletResponse()),
+                VersionedCollection.BOOKS));
+
+        collectionVersions.bump(VersionedCollection.BOOKS);
+
+        assertFalse(collectionVersions.checkNotModified(new ServletWebRequest(request, new MockHttpServletResponse()),
+                VersionedCollection.BOOKS));
+    }
+
+    private long awaitLastModified() throws InterruptedException {
+        long lastModified;
+        while ((lastModified = collectionVersions.lastModified(VersionedCollection.BOOKS)) == -1) {
+            Thread.sleep(10);
+        }
+        return lastModified;
+    }
+}
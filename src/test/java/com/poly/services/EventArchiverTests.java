@@ -0,0 +1,101 @@
+package com.poly.services;
+
+import com.poly.analytics.EventArchive;
+import com.poly.analytics.IntLongHashMap;
+import com.poly.domains.dto.EventRow;
+import com.poly.repositories.EventRepository;
+import com.poly.utils.DayRange;
+import com.poly.utils.EventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventArchiverTests {
+
+    private static final LocalDateTime START = LocalDateTime.parse("2020-01-01T00:00:00");
+    private static final LocalDateTime END = LocalDateTime.parse("2020-01-02T00:00:00");
+
+    @TempDir
+    private Path directory;
+
+    private final EventRepository eventRepository = mock(EventRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private EventArchive eventArchive;
+    private EventArchiver eventArchiver;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(eventRepository.streamBefore(any())).thenAnswer(invocation -> Stream.of(
+                new EventRow(1, 1, 1, EventType.TAKE_BOOK.name(), START.plusHours(1)),
+                new EventRow(2, 1, 2, EventType.RETURN_BOOK.name(), START.plusHours(2)),
+                new EventRow(3, 2, 2, EventType.TAKE_BOOK.name(), START.plusHours(3))));
+        eventArchive = new EventArchive(true, directory, 0, new SimpleMeterRegistry());
+        eventArchive.load();
+        eventArchiver = new EventArchiver(eventArchive, eventRepository, transactionManager, 365, 2);
+    }
+
+    @Test
+    public void archivedEventsArePublishedAndDeleted() throws IOException {
+        when(eventRepository.deleteBefore(any())).thenReturn(3);
+
+        eventArchiver.archive();
+
+        verify(transactionManager).commit(any());
+        assertEquals(3, eventArchive.countBooks(START, END, DayRange.within(START, END), new IntLongHashMap()));
+        assertEquals(2, segmentFiles());
+    }
+
+    @Test
+    public void segmentsAreDiscardedWhenDeletedCountDiffers() throws IOException {
+        when(eventRepository.deleteBefore(any())).thenReturn(2);
+
+        eventArchiver.archive();
+
+        verify(transactionManager).rollback(any());
+        assertEquals(0, eventArchive.countBooks(START, END, DayRange.within(START, END), new IntLongHashMap()));
+        assertEquals(0, segmentFiles());
+    }
+
+    @Test
+    public void movesWaitForLoadsReadingBothTheTableAndTheArchive() throws Exception {
+        when(eventRepository.deleteBefore(any())).thenReturn(3);
+        Thread archiver = new Thread(eventArchiver::archive);
+
+        eventArchive.loadLock().lock();
+        try {
+            archiver.start();
+            archiver.join(200);
+            assertTrue(archiver.isAlive());
+            verify(eventRepository, never()).streamBefore(any());
+        } finally {
+            eventArchive.loadLock().unlock();
+        }
+        archiver.join();
+
+        assertEquals(3, eventArchive.countBooks(START, END, DayRange.within(START, END), new IntLongHashMap()));
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
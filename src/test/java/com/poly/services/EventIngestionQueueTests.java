@@ -0,0 +1,148 @@
+package com.poly.services;
+
+import com.poly.domains.dto.EventBatchItemDto;
+import com.poly.domains.dto.EventDto;
+import com.poly.exceptions.NotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventIngestionQueueTests {
+
+    private static final int POISON_BOOK = -1;
+
+    private final EventService eventService = mock(EventService.class);
+    private final List<Integer> written = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws NotFoundException {
+        when(eventService.validateEvent(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    public void stopDrainsTheQueue() throws Exception {
+        when(eventService.createEvents(anyList())).thenAnswer(invocation -> write(invocation.getArgument(0)));
+        EventIngestionQueue queue = queue(100, 10, Duration.ofSeconds(10));
+        queue.start();
+
+        for (int id = 0; id < 50; id++) {
+            assertNotNull(queue.submit(event(id, 1)));
+        }
+        queue.stop();
+
+        assertEquals(IntStream.range(0, 50).boxed().toList(), written);
+        assertNull(queue.submit(event(50, 1)));
+    }
+
+    @Test
+    public void eventsAreRejectedWhenTheQueueIsFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(eventService.createEvents(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return write(invocation.getArgument(0));
+        });
+        EventIngestionQueue queue = queue(2, 1, Duration.ofSeconds(10));
+        queue.start();
+
+        assertNotNull(queue.submit(event(0, 1)));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertNotNull(queue.submit(event(1, 1)));
+        assertNotNull(queue.submit(event(2, 1)));
+        assertNull(queue.submit(event(3, 1)));
+        release.countDown();
+        queue.stop();
+
+        assertEquals(List.of(0, 1, 2), written);
+    }
+
+    @Test
+    public void poisonEventsAreDroppedAndTheRestOfTheirBatchIsWritten() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch queued = new CountDownLatch(1);
+        when(eventService.createEvents(anyList())).thenAnswer(invocation -> {
+            queued.await();
+            List<EventDto> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(event -> event.idBook() == POISON_BOOK)) {
+                failures.incrementAndGet();
+                throw new DataIntegrityViolationException("violates foreign key constraint");
+            }
+            return write(batch);
+        });
+        EventIngestionQueue queue = queue(100, 10, Duration.ofSeconds(10));
+        queue.start();
+
+        for (int id = 0; id < 10; id++) {
+            queue.submit(event(id, id == 3 || id == 8 ? POISON_BOOK : 1));
+        }
+        queued.countDown();
+        for (int id = 10; id < 15; id++) {
+            queue.submit(event(id, 1));
+        }
+        queue.stop();
+
+        List<Integer> expected = new ArrayList<>(IntStream.range(0, 15).boxed().toList());
+        expected.removeAll(List.of(3, 8));
+        assertEquals(expected, written.stream().sorted().toList());
+        assertTrue(failures.get() >= 3);
+    }
+
+    @Test
+    public void stopGivesUpWhileTheDatabaseIsUnavailable() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        when(eventService.createEvents(anyList())).thenAnswer(invocation -> {
+            attempts.incrementAndGet();
+            throw new CannotCreateTransactionException("Could not open JPA EntityManager for transaction");
+        });
+        EventIngestionQueue queue = queue(100, 10, Duration.ofMillis(200));
+        queue.start();
+
+        for (int id = 0; id < 20; id++) {
+            queue.submit(event(id, 1));
+        }
+        long start = System.nanoTime();
+        queue.stop();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(attempts.get() > 3);
+        assertTrue(written.isEmpty());
+    }
+
+    private EventIngestionQueue queue(int capacity, int maxBatchSize, Duration shutdownTimeout) {
+        return new EventIngestionQueue(true, capacity, maxBatchSize, 3, Duration.ofMillis(1), shutdownTimeout,
+                eventService, mock(EventPartitionService.class));
+    }
+
+    private List<EventBatchItemDto> write(List<EventDto> batch) {
+        List<EventBatchItemDto> results = new ArrayList<>();
+        for (EventDto event : batch) {
+            written.add(event.id());
+            results.add(new EventBatchItemDto(results.size(), event, null));
+        }
+        return results;
+    }
+
+    private static EventDto event(int id, int idBook) {
+        return new EventDto(id, 1, idBook, "TAKE", "2024-01-01T00:00:00");
+    }
+}